@@ -0,0 +1,126 @@
+package com.wwimmo.imageeditor;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.wwimmo.imageeditor.utils.ImageOrientation;
+import com.wwimmo.imageeditor.utils.Utility;
+
+/**
+ * Background image laid out for the view size and content mode.
+ * <p>
+ * The destination rect is computed once per size/mode. When the source is much larger than
+ * the area it is drawn to, a copy pre-scaled to the visible part of that area is kept instead,
+ * so the full resolution image isn't resampled on every frame.
+ * The orientation of the image is applied when drawing, see ImageOrientation.
+ */
+public class BackgroundCache {
+    /**
+     * Pre-scale only when the source is at least this much larger than its destination
+     */
+    private static final float MIN_DOWNSCALE_FACTOR = 1.5f;
+
+    private final Paint mScalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF mDstRect = new RectF();
+    private final RectF mVisibleRect = new RectF();
+    private final Matrix mImageMatrix = new Matrix();
+
+    private Bitmap mImage;
+    private ImageOrientation mOrientation = ImageOrientation.NORMAL;
+    private Bitmap mScaledImage;
+    private int mWidth, mHeight;
+    private String mContentMode;
+    private boolean mIsValid = false;
+
+    public void setImage(@Nullable Bitmap image, @NonNull ImageOrientation orientation) {
+        if (mImage != image || mOrientation != orientation) {
+            mImage = image;
+            mOrientation = orientation;
+            invalidate();
+        }
+    }
+
+    /**
+     * Drop the layout (and the pre-scaled copy), it's rebuilt by the next draw()
+     */
+    public void invalidate() {
+        if (mScaledImage != null) {
+            mScaledImage.recycle();
+            mScaledImage = null;
+        }
+        mIsValid = false;
+    }
+
+    public void draw(@NonNull Canvas canvas, int width, int height, String contentMode, @Nullable Paint paint) {
+        if (mImage == null || width <= 0 || height <= 0) {
+            return;
+        }
+        ensureLayout(width, height, contentMode);
+        if (mScaledImage != null) {
+            canvas.drawBitmap(mScaledImage, mVisibleRect.left, mVisibleRect.top, paint);
+        } else {
+            canvas.drawBitmap(mImage, mImageMatrix, paint);
+        }
+    }
+
+    /**
+     * Matrix drawing the image (in its orientation) into a width x height canvas.
+     *
+     * @return false if there is no image
+     */
+    public boolean getImageMatrix(int width, int height, String contentMode, @NonNull Matrix out) {
+        if (mImage == null || width <= 0 || height <= 0) {
+            return false;
+        }
+        ensureLayout(width, height, contentMode);
+        out.set(mImageMatrix);
+        return true;
+    }
+
+    private void ensureLayout(int width, int height, String contentMode) {
+        if (!mIsValid || width != mWidth || height != mHeight || !TextUtils.equals(contentMode, mContentMode)) {
+            layout(width, height, contentMode);
+        }
+    }
+
+    private void layout(int width, int height, String contentMode) {
+        invalidate();
+        mWidth = width;
+        mHeight = height;
+        mContentMode = contentMode;
+        int imageWidth = mOrientation.getOrientedWidth(mImage.getWidth(), mImage.getHeight());
+        int imageHeight = mOrientation.getOrientedHeight(mImage.getWidth(), mImage.getHeight());
+        mDstRect.set(Utility.fillImage(mImage.getWidth(), mImage.getHeight(), mOrientation, width, height, contentMode));
+        mOrientation.mapToRect(mImage.getWidth(), mImage.getHeight(), mDstRect, mImageMatrix);
+        mIsValid = true;
+
+        float downscale = Math.min(imageWidth / mDstRect.width(), imageHeight / mDstRect.height());
+        if (downscale < MIN_DOWNSCALE_FACTOR) {
+            return;
+        }
+        // AspectFill may overflow the view, only the visible part is kept
+        mVisibleRect.set(0, 0, width, height);
+        if (!mVisibleRect.intersect(mDstRect)) {
+            return;
+        }
+        mVisibleRect.set((float) Math.floor(mVisibleRect.left), (float) Math.floor(mVisibleRect.top),
+                (float) Math.ceil(mVisibleRect.right), (float) Math.ceil(mVisibleRect.bottom));
+        try {
+            mScaledImage = Bitmap.createBitmap((int) mVisibleRect.width(), (int) mVisibleRect.height(), Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            // Fall back to scaling on draw
+            mScaledImage = null;
+            return;
+        }
+        Canvas scaledCanvas = new Canvas(mScaledImage);
+        scaledCanvas.translate(-mVisibleRect.left, -mVisibleRect.top);
+        scaledCanvas.drawBitmap(mImage, mImageMatrix, mScalePaint);
+    }
+}
@@ -0,0 +1,264 @@
+package com.wwimmo.imageeditor;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.common.executors.UiThreadImmediateExecutorService;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.datasource.BaseDataSubscriber;
+import com.facebook.datasource.DataSource;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.common.ResizeOptions;
+import com.facebook.imagepipeline.image.CloseableImage;
+import com.facebook.imagepipeline.image.CloseableStaticBitmap;
+import com.facebook.imagepipeline.request.ImageRequest;
+import com.facebook.imagepipeline.request.ImageRequestBuilder;
+import com.facebook.react.views.imagehelper.ImageSource;
+import com.wwimmo.imageeditor.utils.ImageOrientation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads background images through the Fresco pipeline, resized to the size of the screen.
+ * <p>
+ * content://, file:// and asset:// sources are supported. Decoding happens on the pipeline executors
+ * and decoded images are shared with the rest of the app through the Fresco bitmap cache, so opening
+ * the same image again is a cache lookup. The full resolution is decoded only on demand, see
+ * decodeFullResolution(). Only the result of the latest load() is delivered, on the UI thread.
+ * <p>
+ * NOTE: the bitmap isn't rotated, its EXIF orientation is returned to be applied when drawing.
+ */
+public class BackgroundLoader {
+    private static final String TAG = "BackgroundLoader";
+
+    public interface Callback {
+        /**
+         * @param result null if the image couldn't be decoded. The callee owns the result, see Result.release()
+         */
+        void onLoaded(@Nullable Result result);
+    }
+
+    public static final class Result {
+        public final Uri uri;
+        public final Bitmap bitmap;
+        public final ImageOrientation orientation;
+        /**
+         * Keeps the bitmap alive in the Fresco cache, null if the bitmap is owned by the result
+         */
+        @Nullable
+        private CloseableReference<CloseableImage> mImageRef;
+
+        Result(Uri uri, Bitmap bitmap, ImageOrientation orientation, @Nullable CloseableReference<CloseableImage> imageRef) {
+            this.uri = uri;
+            this.bitmap = bitmap;
+            this.orientation = orientation;
+            this.mImageRef = imageRef;
+        }
+
+        /**
+         * Width of the bitmap in display orientation
+         */
+        public int getWidth() {
+            return orientation.getOrientedWidth(bitmap.getWidth(), bitmap.getHeight());
+        }
+
+        public int getHeight() {
+            return orientation.getOrientedHeight(bitmap.getWidth(), bitmap.getHeight());
+        }
+
+        /**
+         * Give the bitmap back to the cache, or recycle it if it isn't cached. It mustn't be drawn anymore.
+         */
+        public void release() {
+            if (mImageRef != null) {
+                CloseableReference.closeSafely(mImageRef);
+                mImageRef = null;
+            } else {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    private int mGeneration = 0;
+
+    // Schemes of the sources used as uris, see toUri()
+    private static final String[] URI_SCHEMES = {"content:", "file:", "asset:", "http:", "https:"};
+
+    /**
+     * Uri of a background source: content://, file://, asset:// and http(s):// uris are used as is,
+     * anything else is a file path.
+     * NOTE: a path isn't parsed, a ':' in a file name (e.g. IMG_12:30.jpg) would make its start a scheme
+     */
+    @NonNull
+    public static Uri toUri(@NonNull String source) {
+        for (String scheme : URI_SCHEMES) {
+            if (source.regionMatches(true, 0, scheme, 0, scheme.length())) {
+                return Uri.parse(source);
+            }
+        }
+        return Uri.fromFile(new File(source));
+    }
+
+    /**
+     * Uri of a measurement tool endpoint image, resolved the way RN resolves image sources.
+     */
+    @NonNull
+    public static Uri toEndpointImageUri(@NonNull Context context, @NonNull String asset) {
+        return new ImageSource(context, asset).getUri();
+    }
+
+    /**
+     * Build the pipeline request for an image displayed in a targetWidth x targetHeight area.
+     * NOTE: the resize options are part of the cache key.
+     * Downsampling is forced for the request: with the default RN pipeline config it is off,
+     * the resize options would then only apply to JPEGs and PNG/WebP/HEIF would be decoded at full resolution.
+     */
+    @NonNull
+    public static ImageRequest buildRequest(@NonNull Uri uri, int targetWidth, int targetHeight) {
+        ImageRequestBuilder builder = ImageRequestBuilder.newBuilderWithSource(uri);
+        if (targetWidth > 0 && targetHeight > 0) {
+            builder.setResizeOptions(new ResizeOptions(targetWidth, targetHeight));
+            builder.setDownsampleOverride(true);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Build the pipeline request of a background image, shared by the editor and prefetching.
+     * NOTE: the target size depends on the screen only, not on the layout of the editor, so both
+     * use the same cache key whenever they run. The larger side is used for both dimensions,
+     * the key doesn't change with the screen orientation.
+     */
+    @NonNull
+    public static ImageRequest buildBackgroundRequest(@NonNull Context context, @NonNull Uri uri) {
+        DisplayMetrics dm = context.getResources().getDisplayMetrics();
+        int targetSize = Math.max(dm.widthPixels, dm.heightPixels);
+        return buildRequest(uri, targetSize, targetSize);
+    }
+
+    /**
+     * Fetch a background image, see buildBackgroundRequest().
+     * Cancels the delivery of any previous load. Has to be called on the UI thread.
+     */
+    public void load(@NonNull Context context, @NonNull final Uri uri, @NonNull final Callback callback) {
+        final int generation = ++mGeneration;
+        DataSource<CloseableReference<CloseableImage>> dataSource =
+                Fresco.getImagePipeline().fetchDecodedImage(buildBackgroundRequest(context, uri), null);
+        dataSource.subscribe(new BaseDataSubscriber<CloseableReference<CloseableImage>>() {
+            @Override
+            protected void onNewResultImpl(@NonNull DataSource<CloseableReference<CloseableImage>> dataSource) {
+                if (!dataSource.isFinished()) {
+                    return;
+                }
+                deliver(generation, toResult(uri, dataSource.getResult()), callback);
+            }
+
+            @Override
+            protected void onFailureImpl(@NonNull DataSource<CloseableReference<CloseableImage>> dataSource) {
+                Log.e(TAG, "failed to load " + uri, dataSource.getFailureCause());
+                deliver(generation, null, callback);
+            }
+        }, UiThreadImmediateExecutorService.getInstance());
+    }
+
+    /**
+     * Drop the result of the pending load, if any.
+     */
+    public void cancel() {
+        mGeneration++;
+    }
+
+    private void deliver(int generation, @Nullable Result result, Callback callback) {
+        if (generation == mGeneration) {
+            callback.onLoaded(result);
+        } else if (result != null) {
+            result.release();
+        }
+    }
+
+    @Nullable
+    private static Result toResult(Uri uri, @Nullable CloseableReference<CloseableImage> imageRef) {
+        if (imageRef == null) {
+            return null;
+        }
+        CloseableImage image = imageRef.get();
+        if (!(image instanceof CloseableStaticBitmap)) {
+            // Animated images aren't supported as background
+            CloseableReference.closeSafely(imageRef);
+            return null;
+        }
+        CloseableStaticBitmap staticBitmap = (CloseableStaticBitmap) image;
+        return new Result(uri, staticBitmap.getUnderlyingBitmap(),
+                ImageOrientation.fromExif(staticBitmap.getExifOrientation()), imageRef);
+    }
+
+    /**
+     * Decode the image at full resolution, on the calling thread. Used for export.
+     * NOTE: blocking, it mustn't run on the UI thread
+     *
+     * @param maxPixels the image is subsampled by a power of 2 until it fits
+     * @return null if the source can't be read as a stream (e.g. network images)
+     */
+    @Nullable
+    public static Result decodeFullResolution(@NonNull Context context, @NonNull Uri uri, long maxPixels) {
+        ImageOrientation orientation = ImageOrientation.NORMAL;
+        try (InputStream stream = openStream(context, uri)) {
+            if (stream == null) {
+                return null;
+            }
+            orientation = ImageOrientation.fromExif(new ExifInterface(stream)
+                    .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL));
+        } catch (IOException e) {
+            Log.e(TAG, "exception when reading exif of " + uri + ": " + e);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream stream = openStream(context, uri)) {
+            if (stream == null) {
+                return null;
+            }
+            BitmapFactory.decodeStream(stream, null, options);
+        } catch (IOException e) {
+            Log.e(TAG, "failed to read the size of " + uri + ": " + e);
+            return null;
+        }
+        int sampleSize = 1;
+        while ((long) (options.outWidth / sampleSize) * (options.outHeight / sampleSize) > maxPixels) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+
+        try (InputStream stream = openStream(context, uri)) {
+            Bitmap bitmap = stream != null ? BitmapFactory.decodeStream(stream, null, options) : null;
+            return bitmap != null ? new Result(uri, bitmap, orientation, null) : null;
+        } catch (IOException | OutOfMemoryError e) {
+            Log.e(TAG, "failed to decode " + uri + ": " + e);
+            return null;
+        }
+    }
+
+    @Nullable
+    static InputStream openStream(Context context, Uri uri) throws IOException {
+        String scheme = uri.getScheme();
+        if ("asset".equals(scheme)) {
+            // Fresco asset uris: asset:///path/in/assets
+            String path = uri.getPath();
+            return context.getAssets().open(path != null && path.startsWith("/") ? path.substring(1) : path);
+        } else if ("content".equals(scheme) || "file".equals(scheme)) {
+            return context.getContentResolver().openInputStream(uri);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,111 @@
+package com.wwimmo.imageeditor;
+
+import android.os.SystemClock;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.events.RCTEventEmitter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sends the "topChange" events of the view to RN side.
+ * <p>
+ * State events are coalesced by kind: only the latest event of each kind is sent, on the next
+ * animation frame or, when a throttle interval is set, at most once per interval.
+ * Terminal events (save results, selection changes) and viewport changes are never dropped,
+ * they are sent right away after the pending state events, so RN side receives them in order.
+ * <p>
+ * NOTE: synchronized, events may be sent from a background thread
+ */
+public class ChangeEventDispatcher {
+    public static final String KIND_PATHS = "paths";
+    public static final String KIND_DRAWING_STATE = "drawingState";
+
+    private final ReactContext mContext;
+    private final View mView;
+    // Latest event of each kind, in the order the kinds were first queued
+    private final LinkedHashMap<String, WritableMap> mPending = new LinkedHashMap<>();
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onFlushScheduled();
+        }
+    };
+
+    private int mThrottleInterval = 0;
+    private long mLastFlushTime = 0;
+    private boolean mIsFlushScheduled = false;
+
+    public ChangeEventDispatcher(@NonNull ReactContext context, @NonNull View view) {
+        mContext = context;
+        mView = view;
+    }
+
+    /**
+     * @param throttleInterval minimum time between two sends of the state events in ms, 0 - once per frame
+     */
+    public synchronized void setThrottleInterval(int throttleInterval) {
+        mThrottleInterval = Math.max(0, throttleInterval);
+    }
+
+    /**
+     * Queue a state event, it replaces the pending event of the same kind.
+     */
+    public synchronized void dispatch(@NonNull String kind, @NonNull WritableMap event) {
+        mPending.put(kind, event);
+        if (mIsFlushScheduled) {
+            return;
+        }
+        mIsFlushScheduled = true;
+        long delay = mThrottleInterval > 0 ? mLastFlushTime + mThrottleInterval - SystemClock.uptimeMillis() : 0;
+        if (delay > 0) {
+            mView.postDelayed(mFlushRunnable, delay);
+        } else {
+            mView.postOnAnimation(mFlushRunnable);
+        }
+    }
+
+    /**
+     * Send a terminal event right away, after the pending state events.
+     */
+    public synchronized void dispatchNow(@NonNull WritableMap event) {
+        flush();
+        send(event);
+    }
+
+    /**
+     * Send the pending state events right away.
+     */
+    public synchronized void flush() {
+        if (mIsFlushScheduled) {
+            mIsFlushScheduled = false;
+            mView.removeCallbacks(mFlushRunnable);
+        }
+        if (mPending.isEmpty()) {
+            return;
+        }
+        mLastFlushTime = SystemClock.uptimeMillis();
+        for (Map.Entry<String, WritableMap> entry : mPending.entrySet()) {
+            send(entry.getValue());
+        }
+        mPending.clear();
+    }
+
+    private synchronized void onFlushScheduled() {
+        if (mIsFlushScheduled) {
+            flush();
+        }
+    }
+
+    private void send(WritableMap event) {
+        mContext.getJSModule(RCTEventEmitter.class).receiveEvent(
+                mView.getId(),
+                "topChange",
+                event);
+    }
+}
@@ -0,0 +1,108 @@
+package com.wwimmo.imageeditor;
+
+import android.graphics.PointF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.wwimmo.imageeditor.utils.entities.MotionEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+
+/**
+ * Uniform grid over the bounds of the entities, used for hit testing without visiting every entity.
+ * <p>
+ * The bounds are taken when the entity is added or updated. The live (selected) entity may be
+ * transformed at any time, so it's always tested by findAt() and re-registered by update()
+ * once it's released.
+ */
+public class EntityIndex {
+    private static final int DEFAULT_CELL_SIZE = 256;
+
+    private final UniformGrid<MotionEntity> mGrid;
+    private final IdentityHashMap<MotionEntity, UniformGrid.Entry<MotionEntity>> mEntries = new IdentityHashMap<>();
+
+    /**
+     * Scratch list reused by findAt()
+     */
+    private final ArrayList<UniformGrid.Entry<MotionEntity>> mCandidates = new ArrayList<>();
+
+    public EntityIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public EntityIndex(int cellSize) {
+        mGrid = new UniformGrid<>(cellSize, (entity, out) -> {
+            entity.getBounds(out);
+            return !out.isEmpty();
+        });
+    }
+
+    /**
+     * Register the entity on top of the others, entities have to be added in drawing order.
+     */
+    public void add(@NonNull MotionEntity entity) {
+        remove(entity);
+        mEntries.put(entity, mGrid.add(entity));
+    }
+
+    /**
+     * Refresh the cells of the entity after it has been transformed.
+     */
+    public void update(@NonNull MotionEntity entity) {
+        UniformGrid.Entry<MotionEntity> entry = mEntries.get(entity);
+        if (entry != null) {
+            mGrid.update(entry);
+        }
+    }
+
+    public void remove(@NonNull MotionEntity entity) {
+        UniformGrid.Entry<MotionEntity> entry = mEntries.remove(entity);
+        if (entry != null) {
+            mGrid.remove(entry);
+        }
+    }
+
+    public void clear() {
+        mGrid.clear();
+        mEntries.clear();
+    }
+
+    /**
+     * Topmost entity containing the point, see MotionEntity.pointInLayerRect().
+     *
+     * @param liveEntity entity which may have been transformed since it was registered
+     */
+    @Nullable
+    public MotionEntity findAt(@NonNull PointF point, @Nullable MotionEntity liveEntity) {
+        ArrayList<UniformGrid.Entry<MotionEntity>> candidates = mCandidates;
+        candidates.clear();
+        ArrayList<UniformGrid.Entry<MotionEntity>> entries = mGrid.getCell(point.x, point.y);
+        if (entries != null) {
+            for (int i = 0; i < entries.size(); i++) {
+                UniformGrid.Entry<MotionEntity> entry = entries.get(i);
+                if (entry.item != liveEntity && UniformGrid.contains(entry, point.x, point.y)) {
+                    candidates.add(entry);
+                }
+            }
+        }
+        UniformGrid.Entry<MotionEntity> live = liveEntity != null ? mEntries.get(liveEntity) : null;
+        if (live != null) {
+            candidates.add(live);
+        }
+
+        Collections.sort(candidates, (a, b) -> Long.compare(b.order, a.order));
+        MotionEntity found = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            MotionEntity entity = candidates.get(i).item;
+            if (entity.pointInLayerRect(point)) {
+                found = entity;
+                break;
+            }
+        }
+        candidates.clear();
+        return found;
+    }
+}
@@ -0,0 +1,126 @@
+package com.wwimmo.imageeditor;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.wwimmo.imageeditor.utils.entities.MotionEntity;
+
+import java.util.List;
+
+/**
+ * Flattened rendering of the entities which aren't being edited.
+ * <p>
+ * The entities below and above the live (selected) entity are rasterized into two layers,
+ * so a frame costs at most two blits plus the live entity, whatever the number of entities.
+ * The layers have to be invalidated when the entities, their order or the selection change.
+ */
+public class EntityLayerCache {
+
+    private static final class Layer {
+        Bitmap bitmap;
+        Canvas canvas;
+        boolean isUsed = false;
+
+        /**
+         * Clear the layer, (re)allocating it when the size changed
+         */
+        Canvas prepare(int width, int height) {
+            if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+                release();
+                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                canvas = new Canvas(bitmap);
+            } else {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            }
+            isUsed = true;
+            return canvas;
+        }
+
+        boolean hasSize(int width, int height) {
+            return !isUsed || (bitmap.getWidth() == width && bitmap.getHeight() == height);
+        }
+
+        void draw(Canvas target) {
+            if (isUsed) {
+                target.drawBitmap(bitmap, 0, 0, null);
+            }
+        }
+
+        void release() {
+            if (bitmap != null) {
+                bitmap.recycle();
+                bitmap = null;
+                canvas = null;
+            }
+            isUsed = false;
+        }
+    }
+
+    private final Layer mBelow = new Layer(), mAbove = new Layer();
+    private final RectF mEntityBounds = new RectF();
+    private boolean mIsValid = false;
+
+    public void invalidate() {
+        mIsValid = false;
+    }
+
+    public void release() {
+        mBelow.release();
+        mAbove.release();
+        mIsValid = false;
+    }
+
+    /**
+     * @param entities     all entities, in drawing order
+     * @param liveEntity   entity drawn directly on the canvas, e.g. the one being transformed
+     * @param drawingPaint paint passed to MotionEntity.draw()
+     */
+    public void draw(@NonNull Canvas canvas, @NonNull List<MotionEntity> entities, @Nullable MotionEntity liveEntity,
+                     @Nullable Paint drawingPaint, int width, int height, int measuredWidth, int measuredHeight) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        int liveIndex = liveEntity != null ? entities.indexOf(liveEntity) : -1;
+        if (!mIsValid || !mBelow.hasSize(width, height) || !mAbove.hasSize(width, height)) {
+            int aboveStart = liveIndex >= 0 ? liveIndex + 1 : entities.size();
+            rebuild(mBelow, mEntityBounds, entities, 0, liveIndex >= 0 ? liveIndex : entities.size(), drawingPaint,
+                    width, height, measuredWidth, measuredHeight);
+            rebuild(mAbove, mEntityBounds, entities, aboveStart, entities.size(), drawingPaint,
+                    width, height, measuredWidth, measuredHeight);
+            mIsValid = true;
+        }
+        mBelow.draw(canvas);
+        if (liveIndex >= 0) {
+            liveEntity.setMeasuredSize(measuredWidth, measuredHeight);
+            liveEntity.draw(canvas, drawingPaint);
+        }
+        mAbove.draw(canvas);
+    }
+
+    private static void rebuild(Layer layer, RectF entityBounds, List<MotionEntity> entities, int start, int end, Paint drawingPaint,
+                                int width, int height, int measuredWidth, int measuredHeight) {
+        if (start >= end) {
+            // Keep the bitmap for later use, nothing to draw for now
+            layer.isUsed = false;
+            return;
+        }
+        Canvas canvas = layer.prepare(width, height);
+        for (int i = start; i < end; i++) {
+            MotionEntity entity = entities.get(i);
+            // Skip the entities moved out of the view
+            entity.getBounds(entityBounds);
+            if (canvas.quickReject(entityBounds, Canvas.EdgeType.AA)) {
+                continue;
+            }
+            entity.setMeasuredSize(measuredWidth, measuredHeight);
+            entity.draw(canvas, drawingPaint);
+        }
+    }
+}
@@ -15,18 +15,23 @@ import android.graphics.PointF;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.Typeface;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.VectorDrawable;
 import android.media.ExifInterface;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.MediaStore;
 import android.util.Base64;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
@@ -42,21 +47,19 @@ import androidx.vectordrawable.graphics.drawable.VectorDrawableCompat;
 import com.facebook.common.references.CloseableReference;
 import com.facebook.datasource.DataSource;
 import com.facebook.drawee.backends.pipeline.Fresco;
-import com.facebook.imagepipeline.common.ResizeOptions;
 import com.facebook.imagepipeline.core.DefaultExecutorSupplier;
 import com.facebook.imagepipeline.core.ImagePipeline;
 import com.facebook.imagepipeline.datasource.BaseBitmapDataSubscriber;
 import com.facebook.imagepipeline.image.CloseableImage;
 import com.facebook.imagepipeline.request.ImageRequest;
-import com.facebook.imagepipeline.request.ImageRequestBuilder;
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Callback;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.uimanager.ThemedReactContext;
-import com.facebook.react.uimanager.events.RCTEventEmitter;
-import com.facebook.react.views.imagehelper.ImageSource;
 import com.wwimmo.imageeditor.utils.CanvasText;
+import com.wwimmo.imageeditor.utils.ImageOrientation;
 import com.wwimmo.imageeditor.utils.Utility;
 import com.wwimmo.imageeditor.utils.entities.ArrowEntity;
 import com.wwimmo.imageeditor.utils.entities.BorderStyle;
@@ -83,16 +86,19 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class ImageEditor extends View {
 
-    private final List<String> allShapes = new ArrayList();
-    // Data
-    private final ArrayList<SketchData> mPaths = new ArrayList<SketchData>();
+    private final ShapeHistory allShapes = new ShapeHistory();
+    // Data, indexed by path id in drawing order
+    private final LinkedHashMap<Integer, SketchData> mPaths = new LinkedHashMap<Integer, SketchData>();
+    // Spatial index over the bounds of mPaths, used to redraw only a dirty region
+    private final StrokeGrid mStrokeGrid = new StrokeGrid();
+    // Periodic snapshots of mDrawingBitmap, used to make removing recent strokes cheap
+    private final RasterCheckpoints mCheckpoints = new RasterCheckpoints();
     // Gesture Detection
     private final ScaleGestureDetector mScaleGestureDetector;
     private final RotateGestureDetector mRotateGestureDetector;
@@ -100,13 +106,36 @@ public class ImageEditor extends View {
     private final GestureDetectorCompat mGestureDetectorCompat;
     // Shapes/Entities
     private final ArrayList<MotionEntity> mEntities = new ArrayList<MotionEntity>();
+    // Bounds of mEntities for hit testing, has to follow every add/remove of mEntities
+    private final EntityIndex mEntityIndex = new EntityIndex();
+    private final RectF mEntityBounds = new RectF();
+    // Flattened entities, only mSelectedEntity is drawn live. Invalidate on any change of mEntities or the selection
+    private final EntityLayerCache mEntityLayers = new EntityLayerCache();
+    // Entity stroke the layers were drawn with
+    private int mEntityLayersColor;
+    private float mEntityLayersStrokeWidth;
     // Text
     private final ArrayList<CanvasText> mArrCanvasText = new ArrayList<CanvasText>();
     private final ArrayList<CanvasText> mArrTextOnSketch = new ArrayList<CanvasText>();
     private final ArrayList<CanvasText> mArrSketchOnText = new ArrayList<CanvasText>();
     // General
     private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    // Composites the opaque coverage of the current translucent stroke with the stroke alpha
+    private final Paint mTranslucentPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
     private final ThemedReactContext mContext;
+    // Coalesces the state events sent to RN side, see ChangeEventDispatcher
+    private final ChangeEventDispatcher mEventDispatcher;
+    // Delivers the results of the worker threads, see createImage()
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Sends the delayed deselection event, see onShapeSelectionChanged()
+    private final Runnable mDeselectionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            WritableMap event = Arguments.createMap();
+            event.putBoolean("isShapeSelected", false);
+            mEventDispatcher.dispatchNow(event);
+        }
+    };
     /**
      * Gesture Listeners
      * <p>
@@ -146,19 +175,65 @@ public class ImageEditor extends View {
     // Bitmap
     private Bitmap mDrawingBitmap = null, mTranslucentDrawingBitmap = null;
     private Bitmap mBackgroundImage;
+    // Orientation of mBackgroundImage, applied when drawing it
+    private ImageOrientation mBackgroundOrientation = ImageOrientation.NORMAL;
+    // Reused to pass the background transformation to the measurement lens
+    private final Matrix mBackgroundMatrix = new Matrix();
+    private final BackgroundCache mBackgroundCache = new BackgroundCache();
+    private final TiledBackground mTiledBackground;
+    // Zoom and pan of the content, see setViewport(). Strokes and entities stay in content coordinates
+    private final Matrix mViewport = new Matrix();
+    private final Matrix mViewportInverse = new Matrix();
+    private final RectF mVisibleContentRect = new RectF();
+    private final Paint mViewportBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private float mMaxZoom = 1, mViewportScale = 1, mViewportTranslateX = 0, mViewportTranslateY = 0;
+    private final PointF mLastZoomFocus = new PointF();
+    // Reused by addPoint() to map a touch to content coordinates
+    private final float[] mTouchPoint = new float[2];
+    // Strokes at screen resolution while zoomed in, kept up to date segment by segment like mDrawingBitmap
+    private final ViewportStrokeLayer mViewportStrokes = new ViewportStrokeLayer();
+    // Reused by invalidateContent() which runs for every stroke sample
+    private final RectF mInvalidateRect = new RectF();
+    private final Rect mInvalidateIntegralRect = new Rect();
     private Canvas mDrawingCanvas = null, mTranslucentDrawingCanvas = null;
+    // Static content below the strokes: background, measurement mask and SketchOnText texts
+    private Bitmap mUnderlayBitmap = null;
+    private Canvas mUnderlayCanvas = null;
+    private boolean mUnderlayDirty = true, mUnderlayHasMask = false;
     private int mOriginalBitmapWidth, mOriginalBitmapHeight;
+    // Loads mBackgroundImage resized to the view size, through the Fresco pipeline
+    private final BackgroundLoader mBackgroundLoader = new BackgroundLoader();
+    // Owner of mBackgroundImage when it was loaded by mBackgroundLoader, its source is decoded again on export
+    private BackgroundLoader.Result mBackgroundResult;
     private String mBitmapContentMode;
     private Canvas mSketchCanvas = null;
     private boolean mDisableHardwareAccelerated = false;
     private boolean mNeedsFullRedraw = true;
+    // Region of mDrawingBitmap to redraw on the next onDraw, when a full redraw isn't needed
+    private final RectF mDirtyRegion = new RectF();
     private boolean mIsImageChanged = false;
     private final Paint darkOverlayPaint;
     private Paint entityPaint = new Paint();
+    // Reused by findEntityAtPoint() which runs for every stroke sample
+    private final PointF mTouchPoint = new PointF();
+    private final Rect mBatchDirtyRect = new Rect();
+    // Gesture deltas of mSelectedEntity, applied once per frame by mApplyTransformCallback
+    private final PointF mPendingTranslate = new PointF();
+    private float mPendingScale = 0, mPendingRotation = 0;
+    private boolean mIsTransformScheduled = false;
+    private final Choreographer.FrameCallback mApplyTransformCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mIsTransformScheduled = false;
+            applyPendingTransform();
+        }
+    };
 
     public ImageEditor(ThemedReactContext context) {
         super(context);
         mContext = context;
+        mEventDispatcher = new ChangeEventDispatcher(context, this);
+        mTiledBackground = new TiledBackground(context, this);
 
         this.mScaleGestureDetector = new ScaleGestureDetector(context, new ScaleListener());
         this.mRotateGestureDetector = new RotateGestureDetector(context, new RotateListener());
@@ -192,16 +267,28 @@ public class ImageEditor extends View {
         }
     }
 
-    public String getBase64(String format, boolean transparent, boolean includeImage, boolean includeText, boolean cropToImageSize) {
-        WritableMap event = Arguments.createMap();
-        Bitmap bitmap = createImage(format.equals("png") && transparent, includeImage, includeText, cropToImageSize);
-        ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
-
-        bitmap.compress(
-                format.equals("png") ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG,
-                format.equals("png") ? 100 : 90,
-                byteArrayOS);
-        return Base64.encodeToString(byteArrayOS.toByteArray(), Base64.DEFAULT);
+    /**
+     * Export the image as base64, the image is encoded on a worker thread
+     *
+     * @param callback invoked with (error, base64)
+     */
+    public void getBase64(final String format, boolean transparent, boolean includeImage, boolean includeText,
+                          boolean cropToImageSize, final Callback callback) {
+        createImage(format.equals("png") && transparent, includeImage, includeText, cropToImageSize, bitmap -> {
+            if (bitmap == null) {
+                callback.invoke("Failed to create the image", null);
+                return;
+            }
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+                ByteArrayOutputStream byteArrayOS = new ByteArrayOutputStream();
+                bitmap.compress(
+                        format.equals("png") ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG,
+                        format.equals("png") ? 100 : 90,
+                        byteArrayOS);
+                bitmap.recycle();
+                callback.invoke(null, Base64.encodeToString(byteArrayOS.toByteArray(), Base64.DEFAULT));
+            });
+        });
     }
 
     private String getMeasuredPosition(boolean cropToImageSize) {
@@ -230,24 +317,97 @@ public class ImageEditor extends View {
         }
     }
 
-    private Bitmap createImage(boolean transparent, boolean includeImage, boolean includeText, boolean cropToImageSize) {
-        Bitmap bitmap = Bitmap.createBitmap(
-                mBackgroundImage != null && cropToImageSize ? mOriginalBitmapWidth : getWidth(),
-                mBackgroundImage != null && cropToImageSize ? mOriginalBitmapHeight : getHeight(),
-                Bitmap.Config.ARGB_8888);
+    private interface ImageCallback {
+        /**
+         * @param bitmap null if the image couldn't be allocated. The callee owns the bitmap
+         */
+        void onImageCreated(@Nullable Bitmap bitmap);
+    }
+
+    /**
+     * Compose the exported image, the callback is invoked on the UI thread.
+     * NOTE: when the image is cropped to the background, its full resolution is decoded on a worker thread first.
+     */
+    private void createImage(final boolean transparent, final boolean includeImage, final boolean includeText,
+                             final boolean cropToImageSize, final ImageCallback callback) {
+        if (mBackgroundImage != null && cropToImageSize && mBackgroundResult != null) {
+            // Exported at the original size, the displayed image is resized to the view
+            final Uri uri = mBackgroundResult.uri;
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+                final BackgroundLoader.Result fullResolution =
+                        BackgroundLoader.decodeFullResolution(mContext, uri, getMaxExportPixels());
+                mMainHandler.post(() -> callback.onImageCreated(
+                        composeImage(fullResolution, transparent, includeImage, includeText, cropToImageSize)));
+            });
+        } else {
+            callback.onImageCreated(composeImage(null, transparent, includeImage, includeText, cropToImageSize));
+        }
+    }
+
+    /**
+     * Pixels of the exported image: the decoded background and the image take 4 bytes per pixel each,
+     * they may use up to a quarter of the heap
+     */
+    private static long getMaxExportPixels() {
+        return Math.max(1, Runtime.getRuntime().maxMemory() / 4 / 8);
+    }
+
+    /**
+     * @param fullResolution background at its original size, released here. null to use mBackgroundImage
+     * @return null if the image couldn't be allocated
+     */
+    @Nullable
+    private Bitmap composeImage(@Nullable BackgroundLoader.Result fullResolution, boolean transparent, boolean includeImage,
+                                boolean includeText, boolean cropToImageSize) {
+        if (fullResolution != null && (mDrawingBitmap == null || mBackgroundResult == null || !fullResolution.uri.equals(mBackgroundResult.uri))) {
+            // The background was replaced while it was decoded
+            fullResolution.release();
+            fullResolution = null;
+        }
+        if (mDrawingBitmap == null) {
+            return null;
+        }
+        if (fullResolution != null) {
+            mOriginalBitmapWidth = fullResolution.getWidth();
+            mOriginalBitmapHeight = fullResolution.getHeight();
+        }
+        Bitmap bitmap;
+        try {
+            bitmap = Bitmap.createBitmap(
+                    mBackgroundImage != null && cropToImageSize ? mOriginalBitmapWidth : getWidth(),
+                    mBackgroundImage != null && cropToImageSize ? mOriginalBitmapHeight : getHeight(),
+                    Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            Log.e("SketchCanvas", "failed to allocate the image: " + e);
+            if (fullResolution == null) {
+                return null;
+            }
+            // Export at the size of the displayed image instead
+            fullResolution.release();
+            mOriginalBitmapWidth = mBackgroundOrientation.getOrientedWidth(mBackgroundImage.getWidth(), mBackgroundImage.getHeight());
+            mOriginalBitmapHeight = mBackgroundOrientation.getOrientedHeight(mBackgroundImage.getWidth(), mBackgroundImage.getHeight());
+            return composeImage(null, transparent, includeImage, includeText, cropToImageSize);
+        }
         Canvas canvas = new Canvas(bitmap);
         canvas.drawARGB(transparent ? 0 : 255, 255, 255, 255);
 
         if (mBackgroundImage != null && includeImage) {
+            Bitmap backgroundImage = fullResolution != null ? fullResolution.bitmap : mBackgroundImage;
+            ImageOrientation orientation = fullResolution != null ? fullResolution.orientation : mBackgroundOrientation;
             Rect targetRect = new Rect();
-            Utility.fillImage(mBackgroundImage.getWidth(), mBackgroundImage.getHeight(),
+            Utility.fillImage(backgroundImage.getWidth(), backgroundImage.getHeight(), orientation,
                     bitmap.getWidth(), bitmap.getHeight(), mBitmapContentMode).roundOut(targetRect);
-            canvas.drawBitmap(mBackgroundImage, null, targetRect, null);
+            Matrix imageMatrix = new Matrix();
+            orientation.mapToRect(backgroundImage.getWidth(), backgroundImage.getHeight(), new RectF(targetRect), imageMatrix);
+            canvas.drawBitmap(backgroundImage, imageMatrix, null);
             boolean hasMask = this.hasMeasurement();
             if (hasMask) {
                 canvas.drawRect(0, 0, canvas.getWidth(), canvas.getHeight(), darkOverlayPaint);
             }
         }
+        if (fullResolution != null) {
+            fullResolution.release();
+        }
 
         if (includeText) {
             for (CanvasText text : mArrSketchOnText) {
@@ -255,15 +415,22 @@ public class ImageEditor extends View {
             }
         }
 
+        // Entities are drawn over the strokes with the same transformation, never into mDrawingBitmap:
+        // checkpoints and region redraws would keep them there
         if (mBackgroundImage != null && cropToImageSize) {
-            drawAllEntities(mDrawingCanvas);
             Rect targetRect = new Rect();
             Utility.fillImage(mDrawingBitmap.getWidth(), mDrawingBitmap.getHeight(),
                     bitmap.getWidth(), bitmap.getHeight(), "AspectFill").roundOut(targetRect);
             canvas.drawBitmap(mDrawingBitmap, null, targetRect, mPaint);
+            canvas.save();
+            canvas.translate(targetRect.left, targetRect.top);
+            canvas.scale((float) targetRect.width() / mDrawingBitmap.getWidth(),
+                    (float) targetRect.height() / mDrawingBitmap.getHeight());
+            drawAllEntities(canvas);
+            canvas.restore();
         } else {
-            drawAllEntities(mDrawingCanvas);
             canvas.drawBitmap(mDrawingBitmap, 0, 0, mPaint);
+            drawAllEntities(canvas);
         }
 
         if (includeText) {
@@ -280,7 +447,11 @@ public class ImageEditor extends View {
     public void clear() {
         allShapes.clear();
         mPaths.clear();
+        mStrokeGrid.clear();
+        mCheckpoints.clear();
         mEntities.clear();
+        mEntityIndex.clear();
+        mEntityLayers.invalidate();
         mCurrentPath = null;
         currentFilePath = null;
         mNeedsFullRedraw = true;
@@ -288,12 +459,17 @@ public class ImageEditor extends View {
     }
 
     public void newPath(int id, int strokeColor, float strokeWidth) {
+        allShapes.clearRedo();
         mCurrentPath = new SketchData(id, strokeColor, strokeWidth);
         if (strokeColor != Color.TRANSPARENT) {
             mEntityStrokeColor = strokeColor;
         }
         mEntityStrokeWidth = Utility.convertPxToDpAsFloat(mContext.getResources().getDisplayMetrics(), strokeWidth);
-        mPaths.add(mCurrentPath);
+        mPaths.put(id, mCurrentPath);
+        mStrokeGrid.add(mCurrentPath);
+        if (mCurrentPath.isTranslucent) {
+            mTranslucentPaint.setAlpha(mCurrentPath.getAlpha());
+        }
         boolean isErase = strokeColor == Color.TRANSPARENT;
         if (isErase && !mDisableHardwareAccelerated) {
             mDisableHardwareAccelerated = true;
@@ -302,61 +478,158 @@ public class ImageEditor extends View {
         invalidateCanvas(true);
     }
 
+    /**
+     * Append a point to the current path.
+     * NOTE: x and y are view coordinates, they are mapped here with the current viewport
+     * so RN side doesn't need to know it (its copy may be one event late while zooming)
+     */
     public void addPoint(float x, float y, boolean isMove) {
-        if (measurementEntity == null && mSelectedEntity == null && (findEntityAtPoint(x, y) == null || isMove)) {
-            Rect updateRect = mCurrentPath.addPoint(new PointF(x, y));
+        if (mViewportScale > 1) {
+            mTouchPoint[0] = x;
+            mTouchPoint[1] = y;
+            mViewportInverse.mapPoints(mTouchPoint);
+            x = mTouchPoint[0];
+            y = mTouchPoint[1];
+        }
+        if (measurementEntity == null && mSelectedEntity == null && (isMove || findEntityAtPoint(x, y) == null)) {
+            Rect updateRect = mCurrentPath.addPoint(x, y);
             if (mCurrentPath.isTranslucent) {
-                mTranslucentDrawingCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.MULTIPLY);
-                mCurrentPath.draw(mTranslucentDrawingCanvas);
+                // Only the new segment is drawn (opaque) into the translucent layer,
+                // the stroke alpha is applied once when the layer is composited
+                mCurrentPath.drawLastPoint(mTranslucentDrawingCanvas);
             } else {
                 mCurrentPath.drawLastPoint(mDrawingCanvas);
             }
-            invalidate(updateRect);
-            if (mCurrentPath.points.size() > 0) {
+            if (mViewportScale > 1) {
+                mViewportStrokes.drawLastPoint(mCurrentPath);
+            }
+            invalidateContent(updateRect);
+            if (mCurrentPath.getPointsCount() > 0) {
                 onDrawingStateChangedWithStroke(true);
             }
         }
     }
 
-    public void addPath(int id, int strokeColor, float strokeWidth, ArrayList<PointF> points) {
-        if (strokeColor != Color.TRANSPARENT) {
-            mEntityStrokeColor = strokeColor;
+    /**
+     * Append a batch of points to the current path.
+     * Invalidates the union of the updated areas and notifies RN side only once per batch.
+     *
+     * @param points interleaved view coordinates: x0, y0, x1, y1, ...
+     *               NOTE: mapped in place to content coordinates, see addPoint()
+     */
+    public void addPoints(float[] points, boolean isMove) {
+        if (mCurrentPath == null || measurementEntity != null || mSelectedEntity != null) {
+            return;
         }
-
-        boolean exist = false;
-        for (SketchData data : mPaths) {
-            if (data.id == id) {
-                exist = true;
-                break;
+        if (mViewportScale > 1) {
+            mViewportInverse.mapPoints(points);
+        }
+        Rect dirtyRect = mBatchDirtyRect;
+        dirtyRect.setEmpty();
+        for (int i = 0; i + 1 < points.length; i += 2) {
+            float x = points[i], y = points[i + 1];
+            if (isMove || findEntityAtPoint(x, y) == null) {
+                Rect updateRect = mCurrentPath.addPoint(x, y);
+                mCurrentPath.drawLastPoint(mCurrentPath.isTranslucent ? mTranslucentDrawingCanvas : mDrawingCanvas);
+                if (mViewportScale > 1) {
+                    mViewportStrokes.drawLastPoint(mCurrentPath);
+                }
+                dirtyRect.union(updateRect);
             }
         }
+        if (!dirtyRect.isEmpty()) {
+            invalidateContent(dirtyRect);
+            onDrawingStateChangedWithStroke(true);
+        }
+    }
+
+    /**
+     * @param points interleaved coordinates: x0, y0, x1, y1, ...
+     */
+    public void addPath(int id, int strokeColor, float strokeWidth, float[] points) {
+        if (strokeColor != Color.TRANSPARENT) {
+            mEntityStrokeColor = strokeColor;
+        }
 
-        if (!exist) {
-            SketchData newPath = new SketchData(id, strokeColor, strokeWidth, points);
-            mPaths.add(newPath);
+        if (!mPaths.containsKey(id)) {
+            allShapes.clearRedo();
+            SketchData newPath = new SketchData(id, strokeColor, strokeWidth, points, points.length / 2);
+            mPaths.put(id, newPath);
+            mStrokeGrid.add(newPath);
             boolean isErase = strokeColor == Color.TRANSPARENT;
             if (isErase && !mDisableHardwareAccelerated) {
                 mDisableHardwareAccelerated = true;
                 // setLayerType(View.LAYER_TYPE_SOFTWARE, null);
             }
             newPath.draw(mDrawingCanvas);
+            mViewportStrokes.invalidate();
+            onStrokesCommitted(1);
             invalidateCanvas(true);
         }
     }
 
-    public void deletePath(int id) {
-        int index = -1;
-        for (int i = 0; i < mPaths.size(); i++) {
-            if (mPaths.get(i).id == id) {
-                allShapes.remove(String.valueOf(mPaths.get(i).id));
-                index = i;
-                break;
+    /**
+     * Add several paths at once, e.g. when restoring a saved sketch.
+     * All new paths are drawn in one pass, followed by a single invalidate and event.
+     *
+     * @param points interleaved coordinates of each path: x0, y0, x1, y1, ...
+     */
+    public void addPaths(int[] ids, int[] strokeColors, float[] strokeWidths, float[][] points) {
+        int added = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (mPaths.containsKey(ids[i])) {
+                continue;
+            }
+            int strokeColor = strokeColors[i];
+            if (strokeColor != Color.TRANSPARENT) {
+                mEntityStrokeColor = strokeColor;
+            } else if (!mDisableHardwareAccelerated) {
+                mDisableHardwareAccelerated = true;
+                // setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+            }
+            SketchData newPath = new SketchData(ids[i], strokeColor, strokeWidths[i], points[i], points[i].length / 2);
+            mPaths.put(ids[i], newPath);
+            mStrokeGrid.add(newPath);
+            if (mDrawingCanvas != null) {
+                newPath.draw(mDrawingCanvas);
+            } else {
+                mNeedsFullRedraw = true;
             }
+            added++;
         }
 
-        if (index > -1) {
-            mPaths.remove(index);
-            mNeedsFullRedraw = true;
+        if (added > 0) {
+            allShapes.clearRedo();
+            mViewportStrokes.invalidate();
+            onStrokesCommitted(added);
+            invalidateCanvas(true);
+        }
+    }
+
+    public void deletePath(int id) {
+        deletePath(id, false);
+    }
+
+    /**
+     * @param keepForRedo keep the stroke on the redo stack of allShapes
+     */
+    private void deletePath(int id, boolean keepForRedo) {
+        SketchData data = mPaths.remove(id);
+        if (data != null) {
+            long order = mStrokeGrid.getOrder(id);
+            ShapeHistory.Entry entry = allShapes.removePath(id);
+            if (!keepForRedo) {
+                // A deletion by RN side is a new action, what was undone before can't be redone anymore
+                allShapes.clearRedo();
+            } else if (entry != null) {
+                allShapes.pushRedo(entry);
+            }
+            mStrokeGrid.remove(id);
+            mViewportStrokes.invalidate();
+            mCheckpoints.discardFrom(order);
+            if (!restoreCheckpoint()) {
+                invalidateRegion(data);
+            }
             invalidateCanvas(true);
             onDrawingStateChanged();
         }
@@ -365,18 +638,67 @@ public class ImageEditor extends View {
     public void end() {
         if (mCurrentPath != null) {
             if (mCurrentPath.isTranslucent) {
-                mCurrentPath.draw(mDrawingCanvas);
+                mDrawingCanvas.drawBitmap(mTranslucentDrawingBitmap, 0, 0, mTranslucentPaint);
                 mTranslucentDrawingCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.MULTIPLY);
+                mViewportStrokes.commitTranslucent(mTranslucentPaint);
             }
+            mStrokeGrid.update(mCurrentPath);
+            boolean hasPoints = mCurrentPath.getPointsCount() > 0;
             // Save only path with points
-            if (mCurrentPath.points.size() > 0) {
-                allShapes.add(String.valueOf(mCurrentPath.id));
+            if (hasPoints) {
+                allShapes.addPath(mCurrentPath);
                 onDrawingStateChangedWithStroke(false);
             }
             mCurrentPath = null;
+            if (hasPoints) {
+                onStrokesCommitted(1);
+            }
+        }
+    }
+
+    /**
+     * Let mCheckpoints snapshot mDrawingBitmap, if it's in sync with mPaths
+     */
+    private void onStrokesCommitted(int count) {
+        if (mDrawingBitmap != null && mCurrentPath == null && !mNeedsFullRedraw && mDirtyRegion.isEmpty()) {
+            mCheckpoints.onStrokesCommitted(mDrawingBitmap, mStrokeGrid.getLastOrder(), count);
         }
     }
 
+    /**
+     * Restore the latest checkpoint and replay the strokes drawn after it
+     *
+     * @return false if there is no usable checkpoint
+     */
+    private boolean restoreCheckpoint() {
+        if (mDrawingCanvas == null || mCurrentPath != null || mNeedsFullRedraw) {
+            return false;
+        }
+        long restoredOrder = mCheckpoints.restoreLatest(mDrawingCanvas);
+        if (restoredOrder < 0) {
+            return false;
+        }
+        for (SketchData path : mPaths.values()) {
+            if (mStrokeGrid.getOrder(path.id) > restoredOrder) {
+                path.draw(mDrawingCanvas);
+            }
+        }
+        // The whole bitmap is in sync now
+        mDirtyRegion.setEmpty();
+        return true;
+    }
+
+    public void setCheckpointMemoryLimit(int megabytes) {
+        mCheckpoints.setMaxBytes(megabytes * 1024L * 1024L);
+    }
+
+    /**
+     * @param milliseconds minimum time between two state events of the same kind, 0 - at most one per frame
+     */
+    public void setEventThrottleInterval(int milliseconds) {
+        mEventDispatcher.setThrottleInterval(milliseconds);
+    }
+
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
@@ -388,6 +710,9 @@ public class ImageEditor extends View {
             mTranslucentDrawingBitmap = Bitmap.createBitmap(getWidth(), getHeight(),
                     Bitmap.Config.ARGB_8888);
             mTranslucentDrawingCanvas = new Canvas(mTranslucentDrawingBitmap);
+            mCheckpoints.clear();
+            mViewportStrokes.release();
+            mUnderlayDirty = true;
 
             for (CanvasText text : mArrCanvasText) {
                 PointF position = new PointF(text.position.x, text.position.y);
@@ -404,6 +729,8 @@ public class ImageEditor extends View {
 
             }
 
+            // The viewport is clamped to the content size
+            setViewport(1, 0, 0);
             mNeedsFullRedraw = true;
             invalidate();
         }
@@ -427,103 +754,254 @@ public class ImageEditor extends View {
         if (mNeedsFullRedraw && mDrawingCanvas != null) {
             mDrawingCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.MULTIPLY);
 
-            for (SketchData path : mPaths) {
+            for (SketchData path : mPaths.values()) {
                 path.draw(mDrawingCanvas);
             }
             mNeedsFullRedraw = false;
+            mDirtyRegion.setEmpty();
+            mViewportStrokes.invalidate();
+        } else if (!mDirtyRegion.isEmpty() && mDrawingCanvas != null) {
+            redrawRegion(mDirtyRegion);
+            mDirtyRegion.setEmpty();
+            mViewportStrokes.invalidate();
+        }
+
+        if (mSelectedEntity != null && mSelectedEntity instanceof MeasureToolEntity) {
+            MeasureToolEntity measureTool = (MeasureToolEntity) mSelectedEntity;
+            if (mBackgroundCache.getImageMatrix(getWidth(), getHeight(), mBitmapContentMode, mBackgroundMatrix)) {
+                measureTool.setBackground(mBackgroundImage, mBackgroundMatrix);
+            } else {
+                measureTool.setBackground(null, null);
+            }
         }
 
-        if (mBackgroundImage != null) {
-            Rect dstRect = new Rect();
-            mSketchCanvas.getClipBounds(dstRect);
-            mSketchCanvas.drawBitmap(mBackgroundImage, null,
-                    Utility.fillImage(mBackgroundImage.getWidth(), mBackgroundImage.getHeight(), dstRect.width(), dstRect.height(), mBitmapContentMode),
-                    null);
+        if (mViewportScale > 1) {
+            drawViewport(mSketchCanvas, hasMask);
+        } else {
+            drawUnderlay(mSketchCanvas, hasMask);
 
-            if (hasMask) {
-                mSketchCanvas.drawRect(0, 0, mSketchCanvas.getWidth(), mSketchCanvas.getHeight(), darkOverlayPaint);
+            if (mDrawingBitmap != null) {
+                mSketchCanvas.drawBitmap(mDrawingBitmap, 0, 0, mPaint);
+            }
+
+            if (mTranslucentDrawingBitmap != null && mCurrentPath != null && mCurrentPath.isTranslucent) {
+                mSketchCanvas.drawBitmap(mTranslucentDrawingBitmap, 0, 0, mTranslucentPaint);
+            }
+
+            for (CanvasText text : mArrTextOnSketch) {
+                mSketchCanvas.drawText(text.text, text.drawPosition.x + text.lineOffset.x, text.drawPosition.y + text.lineOffset.y, text.paint);
             }
 
+            if (!mEntities.isEmpty()) {
+                drawEntityLayers(mSketchCanvas);
+            }
+        }
+        if (mBackgroundImage != null && this.mIsImageChanged) {
+            this.onDrawingStateChanged();
+            this.mIsImageChanged = false;
         }
+    }
 
-        for (CanvasText text : mArrSketchOnText) {
-            mSketchCanvas.drawText(text.text, text.drawPosition.x + text.lineOffset.x, text.drawPosition.y + text.lineOffset.y, text.paint);
+    /**
+     * Schedule a redraw of the strokes covering the area of the given stroke
+     */
+    private void invalidateRegion(SketchData data) {
+        if (data.getPointsCount() == 0) {
+            return;
         }
+        RectF bounds = new RectF();
+        data.getBounds(bounds);
+        mDirtyRegion.union(bounds);
+    }
 
-        if (mDrawingBitmap != null) {
-            mSketchCanvas.drawBitmap(mDrawingBitmap, 0, 0, mPaint);
+    /**
+     * Clear the region of mDrawingBitmap and replay only the strokes intersecting it
+     */
+    private void redrawRegion(RectF region) {
+        if (mCurrentPath != null) {
+            // cells covered by the new points of the path in progress, the others are registered already
+            mStrokeGrid.update(mCurrentPath);
+        }
+        mDrawingCanvas.save();
+        mDrawingCanvas.clipRect(region);
+        mDrawingCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        List<SketchData> paths = mStrokeGrid.query(region);
+        for (int i = 0; i < paths.size(); i++) {
+            paths.get(i).draw(mDrawingCanvas);
         }
+        mDrawingCanvas.restore();
+    }
 
-        if (mTranslucentDrawingBitmap != null && mCurrentPath != null && mCurrentPath.isTranslucent) {
-            mSketchCanvas.drawBitmap(mTranslucentDrawingBitmap, 0, 0, mPaint);
+    /**
+     * Draw the static content below the strokes with a single blit.
+     * The underlay is composed again only when the image, the texts, the size or the mask changes.
+     */
+    private void drawUnderlay(Canvas canvas, boolean hasMask) {
+        if (mBackgroundImage == null && mArrSketchOnText.isEmpty()) {
+            return;
+        }
+        int width = getWidth(), height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (mUnderlayBitmap == null || mUnderlayBitmap.getWidth() != width || mUnderlayBitmap.getHeight() != height) {
+            if (mUnderlayBitmap != null) {
+                mUnderlayBitmap.recycle();
+            }
+            mUnderlayBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mUnderlayCanvas = new Canvas(mUnderlayBitmap);
+            mUnderlayDirty = true;
         }
+        if (mUnderlayDirty || hasMask != mUnderlayHasMask) {
+            mUnderlayCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            if (mBackgroundImage != null) {
+                mBackgroundCache.draw(mUnderlayCanvas, width, height, mBitmapContentMode, null);
 
-        for (CanvasText text : mArrTextOnSketch) {
-            mSketchCanvas.drawText(text.text, text.drawPosition.x + text.lineOffset.x, text.drawPosition.y + text.lineOffset.y, text.paint);
+                if (hasMask) {
+                    mUnderlayCanvas.drawRect(0, 0, width, height, darkOverlayPaint);
+                }
+            }
+
+            for (CanvasText text : mArrSketchOnText) {
+                mUnderlayCanvas.drawText(text.text, text.drawPosition.x + text.lineOffset.x, text.drawPosition.y + text.lineOffset.y, text.paint);
+            }
+            mUnderlayHasMask = hasMask;
+            mUnderlayDirty = false;
         }
+        canvas.drawBitmap(mUnderlayBitmap, 0, 0, null);
+    }
 
-        if (!mEntities.isEmpty()) {
-            if (mSelectedEntity != null && mSelectedEntity instanceof MeasureToolEntity) {
-                ((MeasureToolEntity) mSelectedEntity).setBackground(mBackgroundImage);
+    /**
+     * Draw the content zoomed in through mViewport. The layers cached at view size would be blurry
+     * scaled up, so the texts and entities are drawn as vectors, the strokes are rendered at screen
+     * resolution by mViewportStrokes, and the resized background is completed with the tiles of mTiledBackground.
+     * NOTE: mDrawingBitmap and the other caches are still kept up to date, for export and zoom 1.
+     */
+    private void drawViewport(Canvas canvas, boolean hasMask) {
+        int width = getWidth(), height = getHeight();
+        mVisibleContentRect.set(0, 0, width, height);
+        mViewportInverse.mapRect(mVisibleContentRect);
+
+        canvas.save();
+        canvas.concat(mViewport);
+        if (mBackgroundImage != null) {
+            mBackgroundCache.draw(canvas, width, height, mBitmapContentMode, mViewportBitmapPaint);
+            mTiledBackground.draw(canvas, mVisibleContentRect, width, height, mBitmapContentMode, mViewportScale);
+            if (hasMask) {
+                canvas.drawRect(0, 0, width, height, darkOverlayPaint);
             }
-            drawAllEntities(mSketchCanvas);
         }
-        if (mBackgroundImage != null && this.mIsImageChanged) {
-            this.onDrawingStateChanged();
-            this.mIsImageChanged = false;
+        for (CanvasText text : mArrSketchOnText) {
+            canvas.drawText(text.text, text.drawPosition.x + text.lineOffset.x, text.drawPosition.y + text.lineOffset.y, text.paint);
+        }
+        canvas.restore();
+
+        // Strokes get their own layer at screen resolution, so erasers clear only the strokes
+        if (mCurrentPath != null) {
+            // cells covered by the new points of the path in progress, the others are registered already
+            mStrokeGrid.update(mCurrentPath);
+        }
+        mViewportStrokes.update(width, height, mViewport, mVisibleContentRect, mStrokeGrid, mCurrentPath);
+        mViewportStrokes.draw(canvas, mTranslucentPaint);
+
+        canvas.save();
+        canvas.concat(mViewport);
+        for (CanvasText text : mArrTextOnSketch) {
+            canvas.drawText(text.text, text.drawPosition.x + text.lineOffset.x, text.drawPosition.y + text.lineOffset.y, text.paint);
+        }
+        if (!mEntities.isEmpty()) {
+            drawAllEntities(canvas);
         }
+        canvas.restore();
+    }
+
+    /**
+     * Invalidate an area given in content coordinates
+     */
+    private void invalidateContent(Rect rect) {
+        if (mViewportScale > 1) {
+            mInvalidateRect.set(rect);
+            mViewport.mapRect(mInvalidateRect);
+            mInvalidateRect.roundOut(mInvalidateIntegralRect);
+            invalidate(mInvalidateIntegralRect);
+        } else {
+            invalidate(rect);
+        }
+    }
+
+    /**
+     * @param maxZoom maximum zoom of the viewport, pinch-zoom and two-finger pan are enabled above 1
+     */
+    public void setMaxZoom(float maxZoom) {
+        mMaxZoom = Math.max(1, maxZoom);
+        setViewport(mViewportScale, mViewportTranslateX, mViewportTranslateY);
+    }
+
+    /**
+     * Map the content to the view: view = content * scale + translate.
+     * The scale is clamped to [1, maxZoom] and the translation so that the content covers the view.
+     */
+    private void setViewport(float scale, float translateX, float translateY) {
+        scale = Math.max(1, Math.min(scale, mMaxZoom));
+        translateX = Math.max(getWidth() * (1 - scale), Math.min(translateX, 0));
+        translateY = Math.max(getHeight() * (1 - scale), Math.min(translateY, 0));
+        if (scale == mViewportScale && translateX == mViewportTranslateX && translateY == mViewportTranslateY) {
+            return;
+        }
+        mViewportScale = scale;
+        mViewportTranslateX = translateX;
+        mViewportTranslateY = translateY;
+        mViewport.setScale(scale, scale);
+        mViewport.postTranslate(translateX, translateY);
+        mViewport.invert(mViewportInverse);
+        if (scale == 1) {
+            mTiledBackground.trimMemory();
+            mViewportStrokes.release();
+        }
+
+        WritableMap viewport = Arguments.createMap();
+        viewport.putDouble("scale", scale);
+        viewport.putDouble("translateX", translateX);
+        viewport.putDouble("translateY", translateY);
+        WritableMap event = Arguments.createMap();
+        event.putMap("viewport", viewport);
+        // Not coalesced: RN side maps the path it keeps with it, it must never lag behind
+        mEventDispatcher.dispatchNow(event);
+        invalidate();
+    }
+
+    /**
+     * Map a touch position from view to content coordinates
+     */
+    private PointF toContentPoint(float x, float y) {
+        float[] point = {x, y};
+        mViewportInverse.mapPoints(point);
+        return new PointF(point[0], point[1]);
     }
 
     private void invalidateCanvas(boolean shouldDispatchEvent) {
         if (shouldDispatchEvent) {
             WritableMap event = Arguments.createMap();
             event.putInt("pathsUpdate", mPaths.size());
-            mContext.getJSModule(RCTEventEmitter.class).receiveEvent(
-                    getId(),
-                    "topChange",
-                    event);
+            mEventDispatcher.dispatch(ChangeEventDispatcher.KIND_PATHS, event);
         }
         invalidate();
     }
 
-    private int exifToDegrees(int exifOrientation) {
-        if (exifOrientation == ExifInterface.ORIENTATION_ROTATE_90) {
-            return 90;
-        } else if (exifOrientation == ExifInterface.ORIENTATION_NORMAL) {
-            return 0;
-        } else if (exifOrientation == ExifInterface.ORIENTATION_ROTATE_180) {
-            return 180;
-        } else if (exifOrientation == ExifInterface.ORIENTATION_ROTATE_270) {
-            return 270;
-        }
-        return 0;
-    }
-
     /**
      * Outgoing Events related code
      **/
     public void onShapeSelectionChanged(MotionEntity nextSelectedEntity) {
-        final WritableMap event = Arguments.createMap();
-        boolean isShapeSelected = nextSelectedEntity != null;
-        event.putBoolean("isShapeSelected", isShapeSelected);
-
-        if (!isShapeSelected) {
+        // A pending deselection is outdated by any newer change
+        mMainHandler.removeCallbacks(mDeselectionRunnable);
+        if (nextSelectedEntity == null) {
             // This is ugly and actually was my last resort to fix the "do not draw when deselecting" problem
             // without breaking existing functionality
-            new Timer().schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    mContext.getJSModule(RCTEventEmitter.class).receiveEvent(
-                            getId(),
-                            "topChange",
-                            event);
-                }
-            }, 250);
+            mMainHandler.postDelayed(mDeselectionRunnable, 250);
         } else {
-            mContext.getJSModule(RCTEventEmitter.class).receiveEvent(
-                    getId(),
-                    "topChange",
-                    event);
+            WritableMap event = Arguments.createMap();
+            event.putBoolean("isShapeSelected", true);
+            mEventDispatcher.dispatchNow(event);
         }
     }
 
@@ -531,10 +1009,7 @@ public class ImageEditor extends View {
         WritableMap event = Arguments.createMap();
         event.putBoolean("success", success);
         event.putString("path", path);
-        mContext.getJSModule(RCTEventEmitter.class).receiveEvent(
-                getId(),
-                "topChange",
-                event);
+        mEventDispatcher.dispatchNow(event);
     }
 
     /**
@@ -589,45 +1064,52 @@ public class ImageEditor extends View {
         return result;
     }
 
-    public void save(String format, String folder, String filename, boolean transparent, boolean includeImage, boolean includeText, boolean cropToImageSize, boolean saveToGallery) {
-
-        boolean success;
-        File rootFolder;
-        File createdFile = null;
-        // Save file to private directory
-        rootFolder = new File(mContext.getFilesDir().getAbsolutePath() + File.separator + folder);
-
-        success = rootFolder.exists() || rootFolder.mkdirs();
-        if (success) {
-            Bitmap bitmap = createImage(format.equals("png") && transparent, includeImage, includeText, cropToImageSize);
-
-            createdFile = new File(rootFolder.getAbsolutePath() + File.separator + filename + (format.equals("png") ? ".png" : ".jpg"));
-            try {
-                bitmap.compress(
-                        format.equals("png") ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG,
-                        format.equals("png") ? 100 : 90,
-                        new FileOutputStream(createdFile));
-                String path = createdFile.getPath();
-                this.onSaved(true, path);
-
-                this.updateExif(path, this.getMeasuredPosition(cropToImageSize));
-
-                success = true;
-            } catch (Exception e) {
-                e.printStackTrace();
+    /**
+     * Export the image to a file, onSaved() is dispatched once it's written.
+     * NOTE: the image is encoded and written on a worker thread
+     */
+    public void save(final String format, final String folder, final String filename, boolean transparent, boolean includeImage, boolean includeText, final boolean cropToImageSize, final boolean saveToGallery) {
+        createImage(format.equals("png") && transparent, includeImage, includeText, cropToImageSize, bitmap -> {
+            if (bitmap == null) {
                 this.onSaved(false, null);
-                success = false;
+                return;
             }
-        } else {
-            Log.e("SketchCanvas", "Failed to create folder!");
-            this.onSaved(false, null);
-            success = false;
-        }
+            // Depends on the size of the image
+            final String position = this.getMeasuredPosition(cropToImageSize);
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+                boolean success;
+                File createdFile = null;
+                // Save file to private directory
+                File rootFolder = new File(mContext.getFilesDir().getAbsolutePath() + File.separator + folder);
+
+                success = rootFolder.exists() || rootFolder.mkdirs();
+                if (success) {
+                    createdFile = new File(rootFolder.getAbsolutePath() + File.separator + filename + (format.equals("png") ? ".png" : ".jpg"));
+                    try (FileOutputStream stream = new FileOutputStream(createdFile)) {
+                        bitmap.compress(
+                                format.equals("png") ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG,
+                                format.equals("png") ? 100 : 90,
+                                stream);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        success = false;
+                    }
+                } else {
+                    Log.e("SketchCanvas", "Failed to create folder!");
+                }
+                bitmap.recycle();
 
-        if (success && saveToGallery) {
-            copyToGallery(createdFile, folder, format);
-        }
+                final String path = success ? createdFile.getPath() : null;
+                if (path != null) {
+                    this.updateExif(path, position);
+                }
+                mMainHandler.post(() -> this.onSaved(path != null, path));
 
+                if (success && saveToGallery) {
+                    copyToGallery(createdFile, folder, format);
+                }
+            });
+        });
     }
 
     public void updateExif(String path, String position) {
@@ -702,54 +1184,78 @@ public class ImageEditor extends View {
                     filename.lastIndexOf('.') == -1 ? filename : filename.substring(0, filename.lastIndexOf('.')),
                     "drawable",
                     mContext.getPackageName());
-            BitmapFactory.Options bitmapOptions = new BitmapFactory.Options();
-            Bitmap bitmap = null;
-            this.mIsImageChanged = true;
-            try {
-                if (res == 0) {
-                    String convertedDirectory = directory == null ? "" : directory;
-                    String path = convertedDirectory + filename;
-                    ExifInterface exif = new ExifInterface(path);
-                    int exifOrientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
-                    int rotationInDegrees = exifToDegrees(exifOrientation);
-                    Bitmap tempBitmap = BitmapFactory.decodeFile(new File(path).toString(), bitmapOptions);
-
-                    // Let's rotate the loaded image into the correct orientation :-)
-                    Matrix matrix = new Matrix();
-                    if (exifOrientation != 0f) {
-                        matrix.preRotate(rotationInDegrees);
-                        bitmap = Bitmap.createBitmap(tempBitmap, 0, 0, tempBitmap.getWidth(), tempBitmap.getHeight(), matrix, true);
+            if (res != 0) {
+                // Bundled drawables are small, no need to load them in the background
+                mBackgroundLoader.cancel();
+                Bitmap bitmap = getBitmapFromDrawable(mContext, res);
+                if (bitmap != null) {
+                    setBackgroundImage(bitmap, ImageOrientation.NORMAL, null, mode);
+                    return true;
+                }
+                return false;
+            }
+
+            String source = (directory == null ? "" : directory) + filename;
+            Uri uri = BackgroundLoader.toUri(source);
+            onBackgroundLoadingChanged(true, false);
+            // Decoded at the screen size whether the view is laid out or not, see ImageEditorModule.prefetch()
+            mBackgroundLoader.load(mContext, uri, new BackgroundLoader.Callback() {
+                @Override
+                public void onLoaded(@Nullable BackgroundLoader.Result result) {
+                    if (result != null) {
+                        setBackgroundImage(result.bitmap, result.orientation, result, mode);
                     } else {
-                        bitmap = tempBitmap;
+                        Log.e("SKETCHCANVAS", "failed to decode the image in openImageFile: " + source);
                     }
-                } else {
-                    bitmap = getBitmapFromDrawable(mContext, res);
+                    onBackgroundLoadingChanged(false, result != null);
                 }
-            } catch (Exception e) {
-                Log.e("SKETCHCANVAS", "exception in openImageFile when creating ExifInterface: " + e);
-                bitmap = BitmapFactory.decodeFile(new File(filename, directory == null ? "" : directory).toString(), bitmapOptions);
-            }
+            });
+            return true;
+        }
+        return false;
+    }
 
-            if (bitmap != null) {
-                mBackgroundImage = bitmap;
-                mOriginalBitmapHeight = bitmap.getHeight();
-                mOriginalBitmapWidth = bitmap.getWidth();
-                mBitmapContentMode = mode;
+    /**
+     * @param orientation applied when drawing the bitmap
+     * @param result      owner of the bitmap, released when the background is replaced. null for bundled drawables
+     */
+    private void setBackgroundImage(Bitmap bitmap, ImageOrientation orientation,
+                                    @Nullable BackgroundLoader.Result result, String mode) {
+        this.mIsImageChanged = true;
+        mBackgroundImage = bitmap;
+        mBackgroundOrientation = orientation;
+        mBackgroundCache.setImage(bitmap, orientation);
+        mTiledBackground.setSource(result != null ? result.uri : null, orientation, bitmap.getWidth());
+        mUnderlayDirty = true;
+        // Size of the displayed image, createImage() updates it when it decodes the full resolution
+        mOriginalBitmapWidth = orientation.getOrientedWidth(bitmap.getWidth(), bitmap.getHeight());
+        mOriginalBitmapHeight = orientation.getOrientedHeight(bitmap.getWidth(), bitmap.getHeight());
+        mBitmapContentMode = mode;
+        if (mBackgroundResult != null && mBackgroundResult != result) {
+            mBackgroundResult.release();
+        }
+        mBackgroundResult = result;
 
-                invalidateCanvas(true);
+        invalidateCanvas(true);
+    }
 
-                return true;
-            }
+    private void onBackgroundLoadingChanged(boolean isLoading, boolean success) {
+        WritableMap event = Arguments.createMap();
+        event.putBoolean("isBackgroundLoading", isLoading);
+        if (!isLoading) {
+            event.putBoolean("backgroundLoaded", success);
         }
-        return false;
+        mEventDispatcher.dispatchNow(event);
     }
 
     public void setMeasuredHeight(int measuredHeight) {
         this.measuredHeight = measuredHeight;
+        mEntityLayers.invalidate();
     }
 
     public void setMeasuredWidth(int measuredWidth) {
         this.measuredWidth = measuredWidth;
+        mEntityLayers.invalidate();
     }
 
     public void setCanvasText(ReadableArray aText) {
@@ -772,11 +1278,7 @@ public class ImageEditor extends View {
                         p.setTextAlign(Paint.Align.LEFT);
                         text.text = line;
                         if (property.hasKey("font")) {
-                            try {
-                                mTypeface = Typeface.createFromAsset(mContext.getAssets(), property.getString("font"));
-                            } catch (Exception ex) {
-                                mTypeface = Typeface.create(property.getString("font"), Typeface.NORMAL);
-                            }
+                            mTypeface = TypefaceCache.get(mContext, property.getString("font"));
                             p.setTypeface(mTypeface);
                         }
                         p.setTextSize(property.hasKey("fontSize") ? (float) property.getDouble("fontSize") : 12);
@@ -838,6 +1340,7 @@ public class ImageEditor extends View {
             }
         }
 
+        mUnderlayDirty = true;
         invalidateCanvas(false);
     }
 
@@ -848,7 +1351,9 @@ public class ImageEditor extends View {
         boolean shouldContinue = measurementEntity != null && measurementEntity.isTextStep() && shapeType == EntityType.TEXT;
         if (measurementEntity != null && !shouldContinue) {
             mEntities.remove(measurementEntity);
-            allShapes.remove(measurementEntity.getId());
+            mEntityIndex.remove(measurementEntity);
+            mEntityLayers.invalidate();
+            allShapes.removeEntity(measurementEntity);
             measurementEntity = null;
             mSelectedEntity = null;
         }
@@ -964,11 +1469,7 @@ public class ImageEditor extends View {
 
     public DataSource<CloseableReference<CloseableImage>> getBitmap(Uri uri, int width, int height, BaseBitmapDataSubscriber subscriber) {
         ImagePipeline imagePipeline = Fresco.getImagePipeline();
-        ImageRequestBuilder builder = ImageRequestBuilder.newBuilderWithSource(uri);
-        if (width > 0 && height > 0) {
-            builder.setResizeOptions(new ResizeOptions(width, height));
-        }
-        ImageRequest request = builder.build();
+        ImageRequest request = BackgroundLoader.buildRequest(uri, width, height);
         DataSource<CloseableReference<CloseableImage>> dataSource = imagePipeline.fetchDecodedImage(request, mContext);
 
         dataSource.subscribe(subscriber,
@@ -977,8 +1478,7 @@ public class ImageEditor extends View {
     }
 
     private Uri prepareUri(String asset) {
-        ImageSource source = new ImageSource(getContext(), asset);
-        return source.getUri();
+        return BackgroundLoader.toEndpointImageUri(getContext(), asset);
     }
 
 
@@ -1072,13 +1572,7 @@ public class ImageEditor extends View {
         }
 
         if (fontType != null) {
-            Typeface typeFace = null;
-            try {
-                typeFace = Typeface.createFromAsset(mContext.getAssets(), fontType);
-            } catch (Exception ex) {
-                typeFace = Typeface.create(fontType, Typeface.NORMAL);
-            }
-            font.setTypeface(typeFace);
+            font.setTypeface(TypefaceCache.get(mContext, fontType));
         }
 
         textLayer.setFont(font);
@@ -1095,8 +1589,11 @@ public class ImageEditor extends View {
 
             initEntityBorder(entity);
             initialTranslateAndScale(entity);
+            allShapes.clearRedo();
             mEntities.add(entity);
-            allShapes.add(entity.getId());
+            mEntityIndex.add(entity);
+            mEntityLayers.invalidate();
+            allShapes.addEntity(entity);
             onShapeSelectionChanged(entity);
             selectEntity(entity);
             onDrawingStateChanged();
@@ -1119,15 +1616,38 @@ public class ImageEditor extends View {
         entityPaint.setColor(mEntityStrokeColor);
         entityPaint.setStrokeWidth(mEntityStrokeWidth);
             MotionEntity me = mEntities.get(i);
+            me.getBounds(mEntityBounds);
+            if (canvas.quickReject(mEntityBounds, Canvas.EdgeType.AA)) {
+                continue;
+            }
             me.setMeasuredSize(measuredWidth, measuredHeight);
             me.draw(canvas, entityPaint);
         }
     }
 
-    private void handleTranslate(PointF delta) {
+    /**
+     * Same result as drawAllEntities(), using the flattened layers of mEntityLayers
+     */
+    private void drawEntityLayers(Canvas canvas) {
+        // The entity stroke changes with newPath(), addPath() and setShapeConfiguration()
+        if (mEntityLayersColor != mEntityStrokeColor || mEntityLayersStrokeWidth != mEntityStrokeWidth) {
+            mEntityLayersColor = mEntityStrokeColor;
+            mEntityLayersStrokeWidth = mEntityStrokeWidth;
+            mEntityLayers.invalidate();
+        }
+        entityPaint.setColor(mEntityStrokeColor);
+        entityPaint.setStrokeWidth(mEntityStrokeWidth);
+        mEntityLayers.draw(canvas, mEntities, mSelectedEntity, entityPaint,
+                getWidth(), getHeight(), measuredWidth, measuredHeight);
+    }
+
+    /**
+     * @return true if the selected entity has been moved
+     */
+    private boolean handleTranslate(PointF delta) {
+        boolean needUpdateUI = false;
         if (mSelectedEntity != null) {
 
-            boolean needUpdateUI = false;
             if (mSelectedEntity instanceof MeasureToolEntity) {
                 needUpdateUI = ((MeasureToolEntity) mSelectedEntity).handleTranslate(delta);
             } else {
@@ -1144,10 +1664,70 @@ public class ImageEditor extends View {
                     needUpdateUI = true;
                 }
             }
-            if (needUpdateUI) {
-                invalidateCanvas(true);
+        }
+        return needUpdateUI;
+    }
+
+    /**
+     * Gesture listeners run for every MotionEvent. The deltas are accumulated and applied
+     * on the next frame, so the entity is transformed, redrawn and reported only once per frame.
+     */
+    private void scheduleTransform() {
+        if (!mIsTransformScheduled) {
+            mIsTransformScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mApplyTransformCallback);
+        }
+    }
+
+    /**
+     * Apply the accumulated gesture deltas to mSelectedEntity right away
+     */
+    private void applyPendingTransform() {
+        if (mIsTransformScheduled) {
+            mIsTransformScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mApplyTransformCallback);
+        }
+        boolean needUpdateUI = false;
+        if (mSelectedEntity != null) {
+            if (mPendingTranslate.x != 0 || mPendingTranslate.y != 0) {
+                needUpdateUI = handleTranslate(mPendingTranslate);
+            }
+            if (mPendingScale != 0) {
+                mSelectedEntity.getLayer().postScaleClamped(mPendingScale);
+                needUpdateUI = true;
+            }
+            if (mPendingRotation != 0) {
+                mSelectedEntity.getLayer().postRotate(mPendingRotation);
+                needUpdateUI = true;
             }
         }
+        mPendingTranslate.set(0, 0);
+        mPendingScale = 0;
+        mPendingRotation = 0;
+        if (needUpdateUI) {
+            invalidateCanvas(true);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        if (mIsTransformScheduled) {
+            mIsTransformScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mApplyTransformCallback);
+        }
+        mMainHandler.removeCallbacks(mDeselectionRunnable);
+        mEventDispatcher.flush();
+        // Closes the region decoder, see onAttachedToWindow()
+        mTiledBackground.setSource(null, ImageOrientation.NORMAL, 0);
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mBackgroundResult != null) {
+            mTiledBackground.setSource(mBackgroundResult.uri, mBackgroundOrientation, mBackgroundResult.bitmap.getWidth());
+        }
     }
 
     private void initialTranslateAndScale(MotionEntity entity) {
@@ -1156,30 +1736,33 @@ public class ImageEditor extends View {
     }
 
     private void selectEntity(MotionEntity entity) {
+        if (mSelectedEntity != entity) {
+            // Pending gesture deltas belong to the previous selection
+            applyPendingTransform();
+        }
         if (mSelectedEntity != null && mSelectedEntity != entity) {
             mSelectedEntity.setIsSelected(false);
+            // It may have been transformed while it was selected
+            mEntityIndex.update(mSelectedEntity);
         }
         if (entity != null) {
             entity.setIsSelected(true);
         }
         mSelectedEntity = entity;
+        mEntityLayers.invalidate();
         invalidateCanvas(true);
     }
 
     private MotionEntity findEntityAtPoint(float x, float y) {
-        MotionEntity selected = null;
-        PointF p = new PointF(x, y);
-        for (int i = mEntities.size() - 1; i >= 0; i--) {
-            // Unselect previous selected items
-            if (mEntities.get(i).pointInLayerRect(p) && selected == null) {
-                selected = mEntities.get(i);
-            }
-        }
-        return selected;
+        PointF p = mTouchPoint;
+        p.set(x, y);
+        // Topmost entity wins, only the entities registered under the point are tested
+        return mEntityIndex.findAt(p, mSelectedEntity);
     }
 
     private void updateSelectionOnTap(MotionEvent e) {
-        updateSelectionOnTap(e.getX(), e.getY());
+        PointF point = toContentPoint(e.getX(), e.getY());
+        updateSelectionOnTap(point.x, point.y);
     }
 
     private void updateSelectionOnTap(float x, float y) {
@@ -1193,14 +1776,10 @@ public class ImageEditor extends View {
     }
 
     public void releaseSelectedEntity() {
-        MotionEntity toRemoveEntity = null;
-        for (MotionEntity entity : mEntities) {
-            if (entity.isSelected()) {
-                toRemoveEntity = entity;
-                break;
-            }
+        // Only mSelectedEntity can be in selected state, see selectEntity()
+        if (mSelectedEntity != null && mSelectedEntity.isSelected()) {
+            deleteShape(mSelectedEntity);
         }
-        deleteShape(toRemoveEntity);
     }
 
     public void unselectShape() {
@@ -1215,12 +1794,25 @@ public class ImageEditor extends View {
     }
 
     private void deleteShape(MotionEntity toRemoveEntity) {
+        deleteShape(toRemoveEntity, false);
+    }
+
+    /**
+     * @param keepForRedo keep the entity (unreleased) on the redo stack of allShapes
+     */
+    private void deleteShape(MotionEntity toRemoveEntity, boolean keepForRedo) {
         if (toRemoveEntity != null) {
             measurementEntity = null;
             toRemoveEntity.setIsSelected(false);
-            allShapes.remove(toRemoveEntity.getId());
+            ShapeHistory.Entry entry = allShapes.removeEntity(toRemoveEntity);
             if (mEntities.remove(toRemoveEntity)) {
-                toRemoveEntity.release();
+                mEntityIndex.remove(toRemoveEntity);
+                mEntityLayers.invalidate();
+                if (keepForRedo && entry != null) {
+                    allShapes.pushRedo(entry);
+                } else {
+                    toRemoveEntity.release();
+                }
                 mSelectedEntity = null;
                 onShapeSelectionChanged(null);
                 invalidateCanvas(true);
@@ -1228,35 +1820,24 @@ public class ImageEditor extends View {
         }
     }
 
-    private boolean isPathId(String id) {
-        if (id == null) {
-            return false;
-        }
-        try {
-            Integer.parseInt(id);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
     public void undo() {
         MotionEntity toRemove = null;
-        String toRemoveId = null;
+        SketchData toRemovePath = null;
         if (mSelectedEntity == null) {
-            if (allShapes.size() > 0) {
-                toRemoveId = allShapes.get(allShapes.size() - 1);
-            }
-
-            if (mEntities.size() > 0 && !isPathId(toRemoveId)) {
-                toRemove = mEntities.get(mEntities.size() - 1);
+            ShapeHistory.Entry last = allShapes.last();
+            if (last != null) {
+                if (last.isPath()) {
+                    toRemovePath = last.path;
+                } else {
+                    toRemove = last.entity;
+                }
             }
         } else {
             toRemove = mSelectedEntity;
         }
         if (toRemove != null) {
             if (!toRemove.undo()) {
-                deleteShape(toRemove);
+                deleteShape(toRemove, true);
                 onDrawingStateChanged(false);
             } else {
                 selectEntity(toRemove);
@@ -1266,9 +1847,50 @@ public class ImageEditor extends View {
                 onDrawingStateChanged(true);
                 invalidateCanvas(true);
             }
-        } else if (toRemoveId != null) {
+        } else if (toRemovePath != null) {
             // Remove from path
-            deletePath(Integer.parseInt(toRemoveId));
+            deletePath(toRemovePath.id, true);
+        }
+    }
+
+    /**
+     * Re-apply the last undone stroke or shape, without a round trip to RN side.
+     * The stroke is drawn on top of mDrawingBitmap, like a new path.
+     */
+    public void redo() {
+        if (mCurrentPath != null || measurementEntity != null) {
+            return;
+        }
+        ShapeHistory.Entry entry = allShapes.popRedo();
+        if (entry == null) {
+            return;
+        }
+        if (entry.isPath()) {
+            SketchData path = entry.path;
+            if (mPaths.containsKey(path.id)) {
+                // Re-added by RN side in the meantime
+                onDrawingStateChanged();
+                return;
+            }
+            mPaths.put(path.id, path);
+            mStrokeGrid.add(path);
+            allShapes.addPath(path);
+            mViewportStrokes.invalidate();
+            if (mDrawingCanvas != null && !mNeedsFullRedraw) {
+                path.draw(mDrawingCanvas);
+                onStrokesCommitted(1);
+            } else {
+                mNeedsFullRedraw = true;
+            }
+            invalidateCanvas(true);
+            onDrawingStateChanged();
+        } else if (entry.entity != null) {
+            mEntities.add(entry.entity);
+            mEntityIndex.add(entry.entity);
+            mEntityLayers.invalidate();
+            allShapes.addEntity(entry.entity);
+            invalidateCanvas(true);
+            onDrawingStateChanged();
         }
     }
 
@@ -1323,6 +1945,7 @@ public class ImageEditor extends View {
         WritableMap event = Arguments.createMap();
         // shapes size >0
         event.putBoolean("canUndo", canUndo());
+        event.putBoolean("canRedo", allShapes.canRedo());
 
         if (mSelectedEntity == null) {
             event.putBoolean("canDelete", false);
@@ -1337,11 +1960,7 @@ public class ImageEditor extends View {
             event.putInt("drawingStep", mSelectedEntity.getDrawingStep());
         }
 
-        mContext.getJSModule(RCTEventEmitter.class).receiveEvent(
-                getId(),
-                "topChange",
-                event);
-
+        mEventDispatcher.dispatch(ChangeEventDispatcher.KIND_DRAWING_STATE, event);
     }
 
     private void onDrawingStateChangedWithStroke(boolean pointerDown) {
@@ -1351,15 +1970,12 @@ public class ImageEditor extends View {
         WritableMap event = Arguments.createMap();
         // shapes size >0
         event.putBoolean("canUndo", canUndo());
+        event.putBoolean("canRedo", allShapes.canRedo());
 
         event.putBoolean("canDelete", false);
         event.putString("shapeType", "stroke");
         event.putInt("drawingStep", pointerDown ? 0 : 1);
-        mContext.getJSModule(RCTEventEmitter.class).receiveEvent(
-                getId(),
-                "topChange",
-                event);
-
+        mEventDispatcher.dispatch(ChangeEventDispatcher.KIND_DRAWING_STATE, event);
     }
 
     private class TapsListener extends GestureDetector.SimpleOnGestureListener {
@@ -1368,9 +1984,10 @@ public class ImageEditor extends View {
             // handle adding items to measurement tool
             if (measurementEntity != null) {
                 int prevStep = measurementEntity.getDrawingStep();
-                boolean isSelectedPoint = measurementEntity.pointInLayerRect(new PointF(e.getX(), e.getY()));
+                PointF point = toContentPoint(e.getX(), e.getY());
+                boolean isSelectedPoint = measurementEntity.pointInLayerRect(point);
                 if (!isSelectedPoint) {
-                    boolean inProgress = measurementEntity.addPoint(e.getX(), e.getY());
+                    boolean inProgress = measurementEntity.addPoint(point.x, point.y);
                     if (inProgress) {
                         invalidateCanvas(true);
                         if (prevStep != mSelectedEntity.getDrawingStep()) {
@@ -1414,12 +2031,29 @@ public class ImageEditor extends View {
     }
 
     private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+        @Override
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            mLastZoomFocus.set(detector.getFocusX(), detector.getFocusY());
+            return true;
+        }
+
         @Override
         public boolean onScale(ScaleGestureDetector detector) {
             if (mSelectedEntity != null) {
                 float scaleFactorDiff = detector.getScaleFactor();
-                mSelectedEntity.getLayer().postScale(scaleFactorDiff - 1.0F);
-                invalidateCanvas(true);
+                mPendingScale += scaleFactorDiff - 1.0F;
+                scheduleTransform();
+                return true;
+            }
+            if (mMaxZoom > 1 && measurementEntity == null) {
+                // Zoom and pan the viewport, the content under the fingers follows them
+                float scale = Math.max(1, Math.min(mViewportScale * detector.getScaleFactor(), mMaxZoom));
+                float ratio = scale / mViewportScale;
+                float focusX = detector.getFocusX(), focusY = detector.getFocusY();
+                setViewport(scale,
+                        focusX - (mLastZoomFocus.x - mViewportTranslateX) * ratio,
+                        focusY - (mLastZoomFocus.y - mViewportTranslateY) * ratio);
+                mLastZoomFocus.set(focusX, focusY);
                 return true;
             }
             return false;
@@ -1430,8 +2064,8 @@ public class ImageEditor extends View {
         @Override
         public boolean onRotate(RotateGestureDetector detector) {
             if (mSelectedEntity != null) {
-                mSelectedEntity.getLayer().postRotate(-detector.getRotationDegreesDelta());
-                invalidateCanvas(true);
+                mPendingRotation -= detector.getRotationDegreesDelta();
+                scheduleTransform();
                 return true;
             }
             return false;
@@ -1453,16 +2087,17 @@ public class ImageEditor extends View {
             MotionEvent startEvent = detector.getPrevEvent();
             if (shouldStartMove() && startEvent != null && measurementEntity == null) {
                 // Try to select shape on the start of the move
-                updateSelectionOnTap(startEvent.getX(), startEvent.getY());
+                updateSelectionOnTap(startEvent);
             } else {
                 if (measurementEntity != null) {
+                    PointF startPoint = toContentPoint(startEvent.getX(), startEvent.getY());
                     // move selected point
-                    if (measurementEntity.pointInLayerRect(new PointF(startEvent.getX(), startEvent.getY()))) {
+                    if (measurementEntity.pointInLayerRect(startPoint)) {
                         return true;
                     } else {
                         if (measurementEntity.getDrawingStep() < 2) {
                             shouldUpdateOnEnd = true;
-                            isInProgress = measurementEntity.addPoint(startEvent.getX(), startEvent.getY());
+                            isInProgress = measurementEntity.addPoint(startPoint.x, startPoint.y);
                             return true;
                         }
                     }
@@ -1475,7 +2110,10 @@ public class ImageEditor extends View {
         @Override
         public boolean onMove(MoveGestureDetector detector) {
             if (mSelectedEntity != null) {
-                handleTranslate(detector.getFocusDelta());
+                PointF delta = detector.getFocusDelta();
+                // Deltas are in view pixels, entities in content coordinates
+                mPendingTranslate.offset(delta.x / mViewportScale, delta.y / mViewportScale);
+                scheduleTransform();
                 return true;
             }
             return false;
@@ -1485,6 +2123,7 @@ public class ImageEditor extends View {
         public void onMoveEnd(MoveGestureDetector detector) {
             // Left item selected
             super.onMoveEnd(detector);
+            applyPendingTransform();
             if (mSelectedEntity instanceof MeasureToolEntity entity) {
                 if (!shouldUpdateOnEnd && entity.isTextStep()) {
                     onDrawingStateChanged();
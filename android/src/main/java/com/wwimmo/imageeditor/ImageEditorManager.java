@@ -1,15 +1,18 @@
 package com.wwimmo.imageeditor;
 
-import android.graphics.PointF;
+import android.util.Base64;
 
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.uimanager.SimpleViewManager;
 import com.facebook.react.uimanager.ThemedReactContext;
 import com.facebook.react.uimanager.annotations.ReactProp;
 import com.wwimmo.imageeditor.utils.entities.EntityType;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -30,6 +33,9 @@ public class ImageEditorManager extends SimpleViewManager<ImageEditor> {
     public static final int COMMAND_CHANGE_SHAPE_TEXT = 12;
     public static final int COMMAND_UNSELECT_SHAPE = 13;
     public static final int COMMAND_UNDO = 14;
+    public static final int COMMAND_ADD_POINTS = 15;
+    public static final int COMMAND_ADD_PATHS = 16;
+    public static final int COMMAND_REDO = 17;
 
     public static ImageEditor Canvas = null;
 
@@ -38,6 +44,9 @@ public class ImageEditorManager extends SimpleViewManager<ImageEditor> {
     private static final String PROPS_MEASURED_HEIGHT = "measuredHeight";
     private static final String PROPS_MEASURED_WIDTH = "measuredWidth";
     private static final String PROPS_SHAPE_CONFIGURATION = "shapeConfiguration";
+    private static final String PROPS_CHECKPOINT_MEMORY_LIMIT = "checkpointMemoryLimit";
+    private static final String PROPS_EVENT_THROTTLE_INTERVAL = "eventThrottleInterval";
+    private static final String PROPS_MAX_ZOOM = "maxZoom";
 
     @Override
     public String getName() {
@@ -83,6 +92,21 @@ public class ImageEditorManager extends SimpleViewManager<ImageEditor> {
         viewContainer.setMeasuredWidth(measuredWidth);
     }
 
+    @ReactProp(name = PROPS_CHECKPOINT_MEMORY_LIMIT, defaultInt = 32)
+    public void setCheckpointMemoryLimit(ImageEditor viewContainer, int checkpointMemoryLimit) {
+        viewContainer.setCheckpointMemoryLimit(checkpointMemoryLimit);
+    }
+
+    @ReactProp(name = PROPS_EVENT_THROTTLE_INTERVAL, defaultInt = 0)
+    public void setEventThrottleInterval(ImageEditor viewContainer, int eventThrottleInterval) {
+        viewContainer.setEventThrottleInterval(eventThrottleInterval);
+    }
+
+    @ReactProp(name = PROPS_MAX_ZOOM, defaultFloat = 1f)
+    public void setMaxZoom(ImageEditor viewContainer, float maxZoom) {
+        viewContainer.setMaxZoom(maxZoom);
+    }
+
     @Override
     public Map<String, Integer> getCommandsMap() {
         Map<String, Integer> map = new HashMap<>();
@@ -101,6 +125,9 @@ public class ImageEditorManager extends SimpleViewManager<ImageEditor> {
         map.put("changeShapeText", COMMAND_CHANGE_SHAPE_TEXT);
         map.put("unselectShape", COMMAND_UNSELECT_SHAPE);
         map.put("undoShape", COMMAND_UNDO);
+        map.put("addPoints", COMMAND_ADD_POINTS);
+        map.put("addPaths", COMMAND_ADD_PATHS);
+        map.put("redoShape", COMMAND_REDO);
 
         return map;
     }
@@ -110,6 +137,42 @@ public class ImageEditorManager extends SimpleViewManager<ImageEditor> {
 
     }
 
+    /**
+     * Decode path points into interleaved coordinates: x0, y0, x1, y1, ...
+     * <p>
+     * Supported payloads:
+     * - flat numeric array [x0, y0, x1, y1, ...]
+     * - base64 string of little-endian float32 values in the same order
+     * - legacy array of "x,y" strings
+     */
+    private static float[] decodePathData(ReadableArray args, int index) {
+        if (args.getType(index) == ReadableType.String) {
+            byte[] bytes = Base64.decode(args.getString(index), Base64.DEFAULT);
+            FloatBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            float[] points = new float[buffer.remaining() & ~1];
+            buffer.get(points);
+            return points;
+        }
+
+        ReadableArray path = args.getArray(index);
+        int size = path.size();
+        if (size > 0 && path.getType(0) == ReadableType.String) {
+            float[] points = new float[size * 2];
+            for (int i = 0; i < size; i++) {
+                String[] coor = path.getString(i).split(",");
+                points[i * 2] = Float.parseFloat(coor[0]);
+                points[i * 2 + 1] = Float.parseFloat(coor[1]);
+            }
+            return points;
+        }
+
+        float[] points = new float[size & ~1];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = (float) path.getDouble(i);
+        }
+        return points;
+    }
+
     @Override
     public void receiveCommand(ImageEditor view, int commandType, @Nullable ReadableArray args) {
         switch (commandType) {
@@ -117,6 +180,15 @@ public class ImageEditorManager extends SimpleViewManager<ImageEditor> {
                 view.addPoint((float) args.getDouble(0), (float) args.getDouble(1), (boolean) args.getBoolean(2));
                 return;
             }
+            case COMMAND_ADD_POINTS: {
+                ReadableArray points = args.getArray(0);
+                float[] coordinates = new float[points.size()];
+                for (int i = 0; i < coordinates.length; i++) {
+                    coordinates[i] = (float) points.getDouble(i);
+                }
+                view.addPoints(coordinates, args.getBoolean(1));
+                return;
+            }
             case COMMAND_NEW_PATH: {
                 view.newPath(args.getInt(0), args.getInt(1), (float) args.getDouble(2));
                 return;
@@ -126,13 +198,25 @@ public class ImageEditorManager extends SimpleViewManager<ImageEditor> {
                 return;
             }
             case COMMAND_ADD_PATH: {
-                ReadableArray path = args.getArray(3);
-                ArrayList<PointF> pointPath = new ArrayList<PointF>(path.size());
-                for (int i = 0; i < path.size(); i++) {
-                    String[] coor = path.getString(i).split(",");
-                    pointPath.add(new PointF(Float.parseFloat(coor[0]), Float.parseFloat(coor[1])));
+                view.addPath(args.getInt(0), args.getInt(1), (float) args.getDouble(2), decodePathData(args, 3));
+                return;
+            }
+            case COMMAND_ADD_PATHS: {
+                // [[id, color, width, data], ...] with data in any format supported by addPath
+                ReadableArray paths = args.getArray(0);
+                int count = paths.size();
+                int[] ids = new int[count];
+                int[] colors = new int[count];
+                float[] widths = new float[count];
+                float[][] points = new float[count][];
+                for (int i = 0; i < count; i++) {
+                    ReadableArray path = paths.getArray(i);
+                    ids[i] = path.getInt(0);
+                    colors[i] = path.getInt(1);
+                    widths[i] = (float) path.getDouble(2);
+                    points[i] = decodePathData(path, 3);
                 }
-                view.addPath(args.getInt(0), args.getInt(1), (float) args.getDouble(2), pointPath);
+                view.addPaths(ids, colors, widths, points);
                 return;
             }
             case COMMAND_DELETE_PATH: {
@@ -214,6 +298,10 @@ public class ImageEditorManager extends SimpleViewManager<ImageEditor> {
                 view.undo();
                 return;
             }
+            case COMMAND_REDO : {
+                view.redo();
+                return;
+            }
             default:
                 throw new IllegalArgumentException(String.format(
                         "Unsupported command %d received by %s.",
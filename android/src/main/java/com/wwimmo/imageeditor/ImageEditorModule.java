@@ -1,16 +1,36 @@
 package com.wwimmo.imageeditor;
 
+import android.os.AsyncTask;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
+import com.facebook.common.executors.CallerThreadExecutor;
+import com.facebook.datasource.BaseDataSubscriber;
+import com.facebook.datasource.DataSource;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.request.ImageRequest;
 import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.uimanager.NativeViewHierarchyManager;
 import com.facebook.react.uimanager.UIBlock;
 import com.facebook.react.uimanager.UIManagerModule;
 
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
 public class ImageEditorModule extends ReactContextBaseJavaModule {
+    private static final String TAG = "ImageEditorModule";
+    private static final String E_PREFETCH_FAILED = "E_PREFETCH_FAILED";
+
     ImageEditorModule(ReactApplicationContext reactContext) {
         super(reactContext);
     }
@@ -28,11 +48,74 @@ public class ImageEditorModule extends ReactContextBaseJavaModule {
             UIManagerModule uiManager = context.getNativeModule(UIManagerModule.class);
             uiManager.addUIBlock(nvhm -> {
                 ImageEditor view = (ImageEditor) nvhm.resolveView(tag);
-                String base64 = view.getBase64(type, transparent, includeImage, includeText, cropToImageSize);
-                callback.invoke(null, base64);
+                // The callback is invoked once the image is encoded, off the UI thread
+                view.getBase64(type, transparent, includeImage, includeText, cropToImageSize, callback);
             });
         } catch (Exception e) {
             callback.invoke(e.getMessage(), null);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Decode a background image and the assets of the editor into the caches the editor reads from,
+     * so mounting an editor with them takes a cache lookup instead of a decode.
+     *
+     * NOTE: the background is decoded at the screen size, as the editor does, so both share the cache key
+     *
+     * @param uri    path, or content://, file:// or asset:// uri, as in localSourceImage
+     * @param assets optional {fonts: [name], endpointImages: [source]} used by the text shapes and the measurement tool
+     * @param promise resolved when everything is cached, rejected if an image couldn't be decoded
+     */
+    @ReactMethod
+    public void prefetch(@Nullable String uri, @Nullable ReadableMap assets, final Promise promise) {
+        final ReactApplicationContext context = getReactApplicationContext();
+        ArrayList<ImageRequest> requests = new ArrayList<>();
+        if (uri != null) {
+            requests.add(BackgroundLoader.buildBackgroundRequest(context, BackgroundLoader.toUri(uri)));
+        }
+        ReadableArray endpointImages = assets != null && assets.hasKey("endpointImages") ? assets.getArray("endpointImages") : null;
+        if (endpointImages != null) {
+            for (int i = 0; i < endpointImages.size(); i++) {
+                // Endpoint images are decoded at full size, see ImageEditor.startMeasurementToolEntity()
+                requests.add(BackgroundLoader.buildRequest(
+                        BackgroundLoader.toEndpointImageUri(context, endpointImages.getString(i)), 0, 0));
+            }
+        }
+        final ReadableArray fonts = assets != null && assets.hasKey("fonts") ? assets.getArray("fonts") : null;
+
+        // One task per image, plus the fonts
+        final AtomicInteger remaining = new AtomicInteger(requests.size() + 1);
+        final AtomicBoolean settled = new AtomicBoolean(false);
+
+        for (final ImageRequest request : requests) {
+            DataSource<Void> dataSource = Fresco.getImagePipeline().prefetchToBitmapCache(request, null);
+            dataSource.subscribe(new BaseDataSubscriber<Void>() {
+                @Override
+                protected void onNewResultImpl(@NonNull DataSource<Void> dataSource) {
+                    if (dataSource.isFinished() && remaining.decrementAndGet() == 0 && settled.compareAndSet(false, true)) {
+                        promise.resolve(null);
+                    }
+                }
+
+                @Override
+                protected void onFailureImpl(@NonNull DataSource<Void> dataSource) {
+                    Log.e(TAG, "failed to prefetch " + request.getSourceUri(), dataSource.getFailureCause());
+                    if (settled.compareAndSet(false, true)) {
+                        promise.reject(E_PREFETCH_FAILED, "Failed to prefetch " + request.getSourceUri(), dataSource.getFailureCause());
+                    }
+                }
+            }, CallerThreadExecutor.getInstance());
+        }
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+            if (fonts != null) {
+                for (int i = 0; i < fonts.size(); i++) {
+                    TypefaceCache.get(context, fonts.getString(i));
+                }
+            }
+            if (remaining.decrementAndGet() == 0 && settled.compareAndSet(false, true)) {
+                promise.resolve(null);
+            }
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package com.wwimmo.imageeditor;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+
+/**
+ * Periodic snapshots of the drawing bitmap.
+ * <p>
+ * A checkpoint holds the raster of every stroke up to a given draw order (see StrokeGrid).
+ * Removing a recent stroke restores the nearest earlier checkpoint, so only the strokes
+ * drawn after it have to be replayed.
+ */
+public class RasterCheckpoints {
+    public static final int DEFAULT_INTERVAL = 20;
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private static final class Checkpoint {
+        final Bitmap bitmap;
+        final long lastOrder;
+
+        Checkpoint(Bitmap bitmap, long lastOrder) {
+            this.bitmap = bitmap;
+            this.lastOrder = lastOrder;
+        }
+    }
+
+    private final ArrayList<Checkpoint> mCheckpoints = new ArrayList<>();
+    private final Paint mCopyPaint = new Paint();
+    private final int mInterval;
+    private long mMaxBytes;
+    private int mStrokesSinceCheckpoint = 0;
+
+    public RasterCheckpoints() {
+        this(DEFAULT_INTERVAL, DEFAULT_MAX_BYTES);
+    }
+
+    public RasterCheckpoints(int interval, long maxBytes) {
+        mInterval = interval;
+        mMaxBytes = maxBytes;
+        mCopyPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    }
+
+    /**
+     * Limit the memory used by the snapshots. 0 disables checkpoints.
+     */
+    public void setMaxBytes(long maxBytes) {
+        mMaxBytes = maxBytes;
+        trim(0);
+    }
+
+    /**
+     * Called when strokes have been committed to the drawing bitmap.
+     *
+     * @param drawingBitmap bitmap containing exactly the strokes up to lastOrder
+     * @param lastOrder     draw order of the last stroke contained in the bitmap
+     * @param count         number of committed strokes
+     */
+    public void onStrokesCommitted(@NonNull Bitmap drawingBitmap, long lastOrder, int count) {
+        mStrokesSinceCheckpoint += count;
+        if (mStrokesSinceCheckpoint < mInterval) {
+            return;
+        }
+        long bytes = drawingBitmap.getAllocationByteCount();
+        if (bytes > mMaxBytes) {
+            return;
+        }
+        // Evict the oldest snapshot(s) to make room and reuse the buffer when possible
+        Bitmap reuse = trim(bytes);
+        Bitmap snapshot;
+        if (reuse != null && reuse.getWidth() == drawingBitmap.getWidth() && reuse.getHeight() == drawingBitmap.getHeight()) {
+            snapshot = reuse;
+            new Canvas(snapshot).drawBitmap(drawingBitmap, 0, 0, mCopyPaint);
+        } else {
+            if (reuse != null) {
+                reuse.recycle();
+            }
+            snapshot = drawingBitmap.copy(Bitmap.Config.ARGB_8888, true);
+        }
+        if (snapshot != null) {
+            mCheckpoints.add(new Checkpoint(snapshot, lastOrder));
+        }
+        mStrokesSinceCheckpoint = 0;
+    }
+
+    /**
+     * Drop the checkpoints containing the removed stroke.
+     *
+     * @param order draw order of the removed stroke
+     */
+    public void discardFrom(long order) {
+        for (int i = mCheckpoints.size() - 1; i >= 0; i--) {
+            Checkpoint checkpoint = mCheckpoints.get(i);
+            if (checkpoint.lastOrder >= order) {
+                mCheckpoints.remove(i);
+                checkpoint.bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * Restore the latest checkpoint into the drawing bitmap.
+     *
+     * @return draw order of the last stroke contained in the restored raster, or -1 if there is no checkpoint
+     */
+    public long restoreLatest(@NonNull Canvas drawingCanvas) {
+        Checkpoint latest = latest();
+        if (latest == null) {
+            return -1;
+        }
+        drawingCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        drawingCanvas.drawBitmap(latest.bitmap, 0, 0, mCopyPaint);
+        return latest.lastOrder;
+    }
+
+    public void clear() {
+        for (Checkpoint checkpoint : mCheckpoints) {
+            checkpoint.bitmap.recycle();
+        }
+        mCheckpoints.clear();
+        mStrokesSinceCheckpoint = 0;
+    }
+
+    @Nullable
+    private Checkpoint latest() {
+        return mCheckpoints.isEmpty() ? null : mCheckpoints.get(mCheckpoints.size() - 1);
+    }
+
+    /**
+     * Evict the oldest snapshots until there is room for extraBytes.
+     *
+     * @return bitmap of the last evicted snapshot, which the caller may reuse or has to recycle
+     */
+    @Nullable
+    private Bitmap trim(long extraBytes) {
+        Bitmap evicted = null;
+        while (!mCheckpoints.isEmpty() && usedBytes() + extraBytes > mMaxBytes) {
+            if (evicted != null) {
+                evicted.recycle();
+            }
+            evicted = mCheckpoints.remove(0).bitmap;
+        }
+        if (extraBytes == 0 && evicted != null) {
+            evicted.recycle();
+            evicted = null;
+        }
+        return evicted;
+    }
+
+    private long usedBytes() {
+        long bytes = 0;
+        for (Checkpoint checkpoint : mCheckpoints) {
+            bytes += checkpoint.bitmap.getAllocationByteCount();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,164 @@
+package com.wwimmo.imageeditor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.wwimmo.imageeditor.utils.entities.MotionEntity;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Ordered history of the drawn strokes and added shapes, used by undo.
+ * <p>
+ * Entries are kept in a doubly linked list indexed by path id / entity id,
+ * so append, remove by id and access to the last entry are O(1).
+ * Undone entries are kept on a bounded redo stack until a new stroke or shape is added.
+ */
+public class ShapeHistory {
+    public static final int MAX_REDO_ENTRIES = 100;
+
+    public static final class Entry {
+        @Nullable
+        public final SketchData path;
+        @Nullable
+        public final MotionEntity entity;
+        private Entry prev, next;
+
+        private Entry(@Nullable SketchData path, @Nullable MotionEntity entity) {
+            this.path = path;
+            this.entity = entity;
+        }
+
+        public boolean isPath() {
+            return path != null;
+        }
+    }
+
+    private final HashMap<Integer, Entry> mPathEntries = new HashMap<>();
+    private final HashMap<String, Entry> mEntityEntries = new HashMap<>();
+    private final ArrayDeque<Entry> mRedoEntries = new ArrayDeque<>();
+    private Entry mHead, mTail;
+    private int mSize = 0;
+
+    public void addPath(@NonNull SketchData path) {
+        if (!mPathEntries.containsKey(path.id)) {
+            Entry entry = new Entry(path, null);
+            mPathEntries.put(path.id, entry);
+            append(entry);
+        }
+    }
+
+    public void addEntity(@NonNull MotionEntity entity) {
+        if (!mEntityEntries.containsKey(entity.getId())) {
+            Entry entry = new Entry(null, entity);
+            mEntityEntries.put(entity.getId(), entry);
+            append(entry);
+        }
+    }
+
+    @Nullable
+    public Entry removePath(int id) {
+        Entry entry = mPathEntries.remove(id);
+        if (entry != null) {
+            unlink(entry);
+        }
+        return entry;
+    }
+
+    @Nullable
+    public Entry removeEntity(@NonNull MotionEntity entity) {
+        Entry entry = mEntityEntries.remove(entity.getId());
+        if (entry != null) {
+            unlink(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Keep a removed entry for redo. The stroke is trimmed to its points, the oldest entries
+     * are dropped (and their entities released) above MAX_REDO_ENTRIES.
+     */
+    public void pushRedo(@NonNull Entry entry) {
+        if (entry.path != null) {
+            entry.path.trimToSize();
+        }
+        mRedoEntries.push(entry);
+        while (mRedoEntries.size() > MAX_REDO_ENTRIES) {
+            release(mRedoEntries.removeLast());
+        }
+    }
+
+    /**
+     * @return the last undone entry, NOTE: it's not part of the history until added again
+     */
+    @Nullable
+    public Entry popRedo() {
+        return mRedoEntries.poll();
+    }
+
+    public boolean canRedo() {
+        return !mRedoEntries.isEmpty();
+    }
+
+    /**
+     * Forget the undone entries, called when the drawing changes otherwise
+     */
+    public void clearRedo() {
+        while (!mRedoEntries.isEmpty()) {
+            release(mRedoEntries.pop());
+        }
+    }
+
+    @Nullable
+    public Entry last() {
+        return mTail;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        clearRedo();
+        mPathEntries.clear();
+        mEntityEntries.clear();
+        mHead = null;
+        mTail = null;
+        mSize = 0;
+    }
+
+    private static void release(Entry entry) {
+        if (entry.entity != null) {
+            entry.entity.release();
+        }
+    }
+
+    private void append(Entry entry) {
+        entry.prev = mTail;
+        entry.next = null;
+        if (mTail != null) {
+            mTail.next = entry;
+        } else {
+            mHead = entry;
+        }
+        mTail = entry;
+        mSize++;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            mHead = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        } else {
+            mTail = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        mSize--;
+    }
+}
@@ -4,127 +4,221 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.PointF;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.graphics.RectF;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 public class SketchData {
-    public final ArrayList<PointF> points = new ArrayList<PointF>();
+    private static final int INITIAL_CAPACITY = 64;
+
     public final int id, strokeColor;
     public final float strokeWidth;
     public final boolean isTranslucent;
 
-    private Paint mPaint;
+    /**
+     * Points of the stroke stored as interleaved coordinates: x0, y0, x1, y1, ...
+     * NOTE: primitive storage avoids one PointF allocation per touch sample
+     */
+    private float[] mPoints;
+    private int mPointsCount = 0;
+    /**
+     * Bounds of the points, maintained incrementally by addPoint()
+     */
+    private final RectF mBounds = new RectF();
+
+    private Paint mPaint, mCoveragePaint;
     private Path mPath;
-    private RectF mDirty = null;
 
-    public static PointF midPoint(PointF p1, PointF p2) {
-        return new PointF((p1.x + p2.x) * 0.5f, (p1.y + p2.y) * 0.5f);
-    }
+    /**
+     * Scratch objects reused by addPoint()/drawLastPoint()
+     * NOTE: saved as field variables in order to avoid allocations on every touch sample
+     */
+    private final Path mSegmentPath = new Path();
+    private final RectF mUpdateRect = new RectF();
+    private final Rect mIntegralRect = new Rect();
 
     public SketchData(int id, int strokeColor, float strokeWidth) {
         this.id = id;
         this.strokeColor = strokeColor;
         this.strokeWidth = strokeWidth;
+        this.mPoints = new float[INITIAL_CAPACITY * 2];
         this.isTranslucent = ((strokeColor >> 24) & 0xff) != 255 && strokeColor != Color.TRANSPARENT;
         mPath = this.isTranslucent ? new Path() : null;
     }
 
-    public SketchData(int id, int strokeColor, float strokeWidth, ArrayList<PointF> points) {
+    /**
+     * @param points      interleaved coordinates: x0, y0, x1, y1, ...
+     *                    NOTE: the array is adopted as the backing storage, not copied
+     * @param pointsCount number of points stored in the array
+     */
+    public SketchData(int id, int strokeColor, float strokeWidth, float[] points, int pointsCount) {
         this.id = id;
         this.strokeColor = strokeColor;
         this.strokeWidth = strokeWidth;
-        this.points.addAll(points);
+        this.mPoints = points;
+        this.mPointsCount = pointsCount;
+        for (int i = 0; i < pointsCount; i++) {
+            unionBounds(getX(i), getY(i), i == 0);
+        }
         this.isTranslucent = ((strokeColor >> 24) & 0xff) != 255 && strokeColor != Color.TRANSPARENT;
         mPath = this.isTranslucent ? evaluatePath() : null;
     }
 
-    public Rect addPoint(PointF p) {
-        points.add(p);
+    public int getPointsCount() {
+        return mPointsCount;
+    }
 
-        RectF updateRect;
+    public float getX(int pointIndex) {
+        return mPoints[pointIndex * 2];
+    }
 
-        int pointsCount = points.size();
+    public float getY(int pointIndex) {
+        return mPoints[pointIndex * 2 + 1];
+    }
 
-        if (this.isTranslucent) {
-            if (pointsCount >= 3) {
-                addPointToPath(mPath, 
-                    this.points.get(pointsCount - 3), 
-                    this.points.get(pointsCount - 2),
-                    p);
-            } else if (pointsCount >= 2) {
-                addPointToPath(mPath, this.points.get(0), this.points.get(0), p);
-            } else {
-                addPointToPath(mPath, p, p, p);
-            }
+    /**
+     * Area covered by the stroke, including the stroke width.
+     */
+    public void getBounds(RectF out) {
+        out.set(mBounds);
+        out.inset(-strokeWidth, -strokeWidth);
+    }
 
-            float x = p.x, y = p.y;
-            if (mDirty == null) {
-                mDirty = new RectF(x, y, x + 1, y + 1);
-                updateRect = new RectF(x - this.strokeWidth, y - this.strokeWidth, 
-                    x + this.strokeWidth, y + this.strokeWidth);
-            } else {
-                mDirty.union(x, y);
-                updateRect = new RectF(
-                                    mDirty.left - this.strokeWidth, mDirty.top - this.strokeWidth,
-                                    mDirty.right + this.strokeWidth, mDirty.bottom + this.strokeWidth
-                                    );
-            }
+    private void unionBounds(float x, float y, boolean isFirst) {
+        if (isFirst) {
+            mBounds.set(x, y, x, y);
         } else {
+            mBounds.union(x, y);
+        }
+    }
+
+    private void ensureCapacity(int pointsCount) {
+        if (pointsCount * 2 > mPoints.length) {
+            mPoints = Arrays.copyOf(mPoints, Math.max(pointsCount, mPointsCount * 2) * 2);
+        }
+    }
+
+    /**
+     * Append a point to the stroke.
+     *
+     * @return area that needs to be invalidated. NOTE: the returned Rect is reused by the next call
+     */
+    public Rect addPoint(float x, float y) {
+        if (this.isTranslucent && mPath == null) {
+            mPath = evaluatePath();
+        }
+        ensureCapacity(mPointsCount + 1);
+        mPoints[mPointsCount * 2] = x;
+        mPoints[mPointsCount * 2 + 1] = y;
+        unionBounds(x, y, mPointsCount == 0);
+        mPointsCount++;
+
+        RectF updateRect = mUpdateRect;
+
+        int pointsCount = mPointsCount;
+
+        if (this.isTranslucent) {
             if (pointsCount >= 3) {
-                PointF a = points.get(pointsCount - 3);
-                PointF b = points.get(pointsCount - 2);
-                PointF c = p;
-                PointF prevMid = midPoint(a, b);
-                PointF currentMid = midPoint(b, c);
-
-                updateRect = new RectF(prevMid.x, prevMid.y, prevMid.x, prevMid.y);
-                updateRect.union(b.x, b.y);
-                updateRect.union(currentMid.x, currentMid.y);
+                addPointToPath(mPath,
+                    getX(pointsCount - 3), getY(pointsCount - 3),
+                    getX(pointsCount - 2), getY(pointsCount - 2),
+                    x, y);
             } else if (pointsCount >= 2) {
-                PointF a = points.get(pointsCount - 2);
-                PointF b = p;
-                PointF mid = midPoint(a, b);
-
-                updateRect = new RectF(a.x, a.y, a.x, a.y);
-                updateRect.union(mid.x, mid.y);
+                addPointToPath(mPath, getX(0), getY(0), getX(0), getY(0), x, y);
             } else {
-                updateRect = new RectF(p.x, p.y, p.x, p.y);
+                addPointToPath(mPath, x, y, x, y, x, y);
             }
+        }
 
-            updateRect.inset(-strokeWidth * 2, -strokeWidth * 2);
+        // Translucent strokes are rendered incrementally as well (see drawLastPoint),
+        // so only the area of the last segment needs to be invalidated
+        if (pointsCount >= 3) {
+            float ax = getX(pointsCount - 3), ay = getY(pointsCount - 3);
+            float bx = getX(pointsCount - 2), by = getY(pointsCount - 2);
+            float prevMidX = (ax + bx) * 0.5f, prevMidY = (ay + by) * 0.5f;
+            float currentMidX = (bx + x) * 0.5f, currentMidY = (by + y) * 0.5f;
 
+            updateRect.set(prevMidX, prevMidY, prevMidX, prevMidY);
+            updateRect.union(bx, by);
+            updateRect.union(currentMidX, currentMidY);
+        } else if (pointsCount >= 2) {
+            float ax = getX(pointsCount - 2), ay = getY(pointsCount - 2);
+            float midX = (ax + x) * 0.5f, midY = (ay + y) * 0.5f;
+
+            updateRect.set(ax, ay, ax, ay);
+            updateRect.union(midX, midY);
+        } else {
+            updateRect.set(x, y, x, y);
         }
-        Rect integralRect = new Rect();
-        updateRect.roundOut(integralRect);
-        
-        return integralRect;
+
+        updateRect.inset(-strokeWidth * 2, -strokeWidth * 2);
+        updateRect.roundOut(mIntegralRect);
+
+        return mIntegralRect;
     }
 
     public void drawLastPoint(Canvas canvas) {
-        int pointsCount = points.size();
+        int pointsCount = mPointsCount;
         if (pointsCount < 1) {
             return;
         }
 
-        draw(canvas, pointsCount - 1);
+        draw(canvas, pointsCount - 1, isTranslucent ? getCoveragePaint() : getPaint());
+    }
+
+    /**
+     * Alpha of the stroke color. Translucent strokes are drawn opaque by drawLastPoint()
+     * into a separate layer, which has to be composited using this alpha.
+     */
+    public int getAlpha() {
+        return (strokeColor >> 24) & 0xff;
     }
 
     public void draw(Canvas canvas) {
         if (this.isTranslucent) {
+            if (mPath == null) {
+                mPath = evaluatePath();
+            }
             canvas.drawPath(mPath, getPaint());
         } else {
-            int pointsCount = points.size();
+            int pointsCount = mPointsCount;
             for (int i = 0; i < pointsCount; i++) {
-                draw(canvas, i);
+                draw(canvas, i, getPaint());
             }
         }
     }
 
+    /**
+     * Draw the whole stroke the way drawLastPoint() draws its segments, i.e. translucent strokes opaque.
+     * Used to render the layer of a translucent stroke in progress again.
+     */
+    public void drawCoverage(Canvas canvas) {
+        if (this.isTranslucent) {
+            if (mPath == null) {
+                mPath = evaluatePath();
+            }
+            canvas.drawPath(mPath, getCoveragePaint());
+        } else {
+            draw(canvas);
+        }
+    }
+
+    /**
+     * Release everything that can be rebuilt from the points: spare capacity, paints and the
+     * translucent path. Used while the stroke is kept for redo only.
+     */
+    public void trimToSize() {
+        if (mPoints.length > mPointsCount * 2) {
+            mPoints = Arrays.copyOf(mPoints, mPointsCount * 2);
+        }
+        mPaint = null;
+        mCoveragePaint = null;
+        mPath = null;
+    }
+
     private Paint getPaint() {
         if (mPaint == null) {
             boolean isErase = strokeColor == Color.TRANSPARENT;
@@ -141,80 +235,83 @@ public class SketchData {
         return mPaint;
     }
 
-    private void draw(Canvas canvas, int pointIndex) {
-        int pointsCount = points.size();
+    /**
+     * Opaque variant of the stroke paint. Overlapping segments drawn with it don't accumulate
+     * alpha, so the translucent stroke can be built segment by segment and composited once.
+     */
+    private Paint getCoveragePaint() {
+        if (mCoveragePaint == null) {
+            mCoveragePaint = new Paint(getPaint());
+            mCoveragePaint.setAlpha(255);
+        }
+        return mCoveragePaint;
+    }
+
+    private void draw(Canvas canvas, int pointIndex, Paint paint) {
+        int pointsCount = mPointsCount;
         if (pointIndex >= pointsCount) {
             return;
         }
 
         if (pointsCount >= 3 && pointIndex >= 2) {
-            PointF a = points.get(pointIndex - 2);
-            PointF b = points.get(pointIndex - 1);
-            PointF c = points.get(pointIndex);
-            PointF prevMid = midPoint(a, b);
-            PointF currentMid = midPoint(b, c);
+            float ax = getX(pointIndex - 2), ay = getY(pointIndex - 2);
+            float bx = getX(pointIndex - 1), by = getY(pointIndex - 1);
+            float cx = getX(pointIndex), cy = getY(pointIndex);
 
             // Draw a curve
-            Path path = new Path();
-            path.moveTo(prevMid.x, prevMid.y);
-            path.quadTo(b.x, b.y, currentMid.x, currentMid.y);
+            Path path = mSegmentPath;
+            path.rewind();
+            path.moveTo((ax + bx) * 0.5f, (ay + by) * 0.5f);
+            path.quadTo(bx, by, (bx + cx) * 0.5f, (by + cy) * 0.5f);
 
-            canvas.drawPath(path, getPaint());
+            canvas.drawPath(path, paint);
         } else if (pointsCount >= 2 && pointIndex >= 1) {
-            PointF a = points.get(pointIndex - 1);
-            PointF b = points.get(pointIndex);
-            PointF mid = midPoint(a, b);
+            float ax = getX(pointIndex - 1), ay = getY(pointIndex - 1);
+            float bx = getX(pointIndex), by = getY(pointIndex);
 
             // Draw a line to the middle of points a and b
             // This is so the next draw which uses a curve looks correct and continues from there
-            canvas.drawLine(a.x, a.y, mid.x, mid.y, getPaint());
+            canvas.drawLine(ax, ay, (ax + bx) * 0.5f, (ay + by) * 0.5f, paint);
         } else if (pointsCount >= 1) {
-            PointF a = points.get(pointIndex);
-
             // Draw a single point
-            canvas.drawPoint(a.x, a.y, getPaint());
+            canvas.drawPoint(getX(pointIndex), getY(pointIndex), paint);
         }
     }
 
     private Path evaluatePath() {
-        int pointsCount = points.size();
+        int pointsCount = mPointsCount;
         Path path = new Path();
 
         for(int pointIndex=0; pointIndex<pointsCount; pointIndex++) {
             if (pointsCount >= 3 && pointIndex >= 2) {
-                PointF a = points.get(pointIndex - 2);
-                PointF b = points.get(pointIndex - 1);
-                PointF c = points.get(pointIndex);
-                PointF prevMid = midPoint(a, b);
-                PointF currentMid = midPoint(b, c);
-                
+                float ax = getX(pointIndex - 2), ay = getY(pointIndex - 2);
+                float bx = getX(pointIndex - 1), by = getY(pointIndex - 1);
+                float cx = getX(pointIndex), cy = getY(pointIndex);
+
                 // Draw a curve
-                path.moveTo(prevMid.x, prevMid.y);
-                path.quadTo(b.x, b.y, currentMid.x, currentMid.y);
+                path.moveTo((ax + bx) * 0.5f, (ay + by) * 0.5f);
+                path.quadTo(bx, by, (bx + cx) * 0.5f, (by + cy) * 0.5f);
             } else if (pointsCount >= 2 && pointIndex >= 1) {
-                PointF a = points.get(pointIndex - 1);
-                PointF b = points.get(pointIndex);
-                PointF mid = midPoint(a, b);
-                
+                float ax = getX(pointIndex - 1), ay = getY(pointIndex - 1);
+                float bx = getX(pointIndex), by = getY(pointIndex);
+
                 // Draw a line to the middle of points a and b
                 // This is so the next draw which uses a curve looks correct and continues from there
-                path.moveTo(a.x, a.y);
-                path.lineTo(mid.x, mid.y);
+                path.moveTo(ax, ay);
+                path.lineTo((ax + bx) * 0.5f, (ay + by) * 0.5f);
             } else if (pointsCount >= 1) {
-                PointF a = points.get(pointIndex);
-                
+                float ax = getX(pointIndex), ay = getY(pointIndex);
+
                 // Draw a single point
-                path.moveTo(a.x, a.y);
-                path.lineTo(a.x, a.y);
+                path.moveTo(ax, ay);
+                path.lineTo(ax, ay);
             }
         }
         return path;
     }
 
-    private void addPointToPath(Path path, PointF tPoint, PointF pPoint, PointF point) {
-        PointF mid1 = new PointF((pPoint.x + tPoint.x) * 0.5f, (pPoint.y + tPoint.y) * 0.5f);
-        PointF mid2 = new PointF((point.x + pPoint.x) * 0.5f, (point.y + pPoint.y) * 0.5f);
-        path.moveTo(mid1.x, mid1.y);
-        path.quadTo(pPoint.x, pPoint.y, mid2.x, mid2.y);
+    private void addPointToPath(Path path, float tx, float ty, float px, float py, float x, float y) {
+        path.moveTo((px + tx) * 0.5f, (py + ty) * 0.5f);
+        path.quadTo(px, py, (x + px) * 0.5f, (y + py) * 0.5f);
     }
 }
@@ -0,0 +1,108 @@
+package com.wwimmo.imageeditor;
+
+import android.graphics.RectF;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Uniform grid over the bounds of the strokes, used to find the strokes
+ * which intersect a dirty rectangle without visiting every stroke.
+ * <p>
+ * Results are returned in insertion (drawing) order, so they can be replayed as is.
+ */
+public class StrokeGrid {
+    private static final int DEFAULT_CELL_SIZE = 128;
+
+    private final UniformGrid<SketchData> mGrid;
+    // Keyed by stroke id
+    private final SparseArray<UniformGrid.Entry<SketchData>> mEntries = new SparseArray<>();
+    // Reused by query()
+    private final ArrayList<SketchData> mQueryResult = new ArrayList<>();
+
+    public StrokeGrid() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public StrokeGrid(int cellSize) {
+        mGrid = new UniformGrid<>(cellSize, (data, out) -> {
+            if (data.getPointsCount() == 0) {
+                return false;
+            }
+            data.getBounds(out);
+            return true;
+        });
+    }
+
+    /**
+     * Register the stroke. Strokes are returned by query() in the order they were added.
+     */
+    public void add(@NonNull SketchData data) {
+        UniformGrid.Entry<SketchData> existing = mEntries.get(data.id);
+        if (existing != null) {
+            if (existing.item == data) {
+                update(data);
+                return;
+            }
+            remove(data.id);
+        }
+        mEntries.put(data.id, mGrid.add(data));
+    }
+
+    /**
+     * Register the stroke in the cells covered by the points added to it since the last call.
+     * NOTE: strokes only grow, the cells covered before are kept as is
+     */
+    public void update(@NonNull SketchData data) {
+        UniformGrid.Entry<SketchData> entry = mEntries.get(data.id);
+        if (entry != null) {
+            mGrid.extend(entry);
+        }
+    }
+
+    public void remove(int id) {
+        UniformGrid.Entry<SketchData> entry = mEntries.get(id);
+        if (entry != null) {
+            mEntries.remove(id);
+            mGrid.remove(entry);
+        }
+    }
+
+    public void clear() {
+        mGrid.clear();
+        mEntries.clear();
+    }
+
+    /**
+     * @return draw order of the stroke, -1 if it isn't registered
+     */
+    public long getOrder(int id) {
+        UniformGrid.Entry<SketchData> entry = mEntries.get(id);
+        return entry != null ? entry.order : -1;
+    }
+
+    /**
+     * @return the highest draw order assigned so far, -1 if none
+     */
+    public long getLastOrder() {
+        return mGrid.getLastOrder();
+    }
+
+    /**
+     * Strokes whose bounds intersect the rect, in drawing order.
+     *
+     * @return NOTE: the list is reused by the next call
+     */
+    public List<SketchData> query(@NonNull RectF rect) {
+        ArrayList<UniformGrid.Entry<SketchData>> entries = mGrid.query(rect);
+        ArrayList<SketchData> result = mQueryResult;
+        result.clear();
+        for (int i = 0; i < entries.size(); i++) {
+            result.add(entries.get(i).item);
+        }
+        return result;
+    }
+}
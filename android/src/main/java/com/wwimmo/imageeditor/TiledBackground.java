@@ -0,0 +1,249 @@
+package com.wwimmo.imageeditor;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.wwimmo.imageeditor.utils.ImageOrientation;
+import com.wwimmo.imageeditor.utils.Utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Background image decoded in tiles at the resolution it's displayed at, used while the view is zoomed in.
+ * <p>
+ * The visible part of the image is split in TILE_SIZE x TILE_SIZE tiles of the mip level matching the
+ * zoom (the source subsampled by a power of 2), decoded on demand through BitmapRegionDecoder and kept
+ * in an LRU cache bounded by the screen size, so memory doesn't depend on the image size.
+ * Tiles that aren't decoded yet are not drawn, the resized background drawn below them stands in.
+ * <p>
+ * NOTE: the decoder works on the raw image, the orientation is applied when drawing.
+ * Everything but the decoding runs on the UI thread.
+ */
+public class TiledBackground {
+    private static final String TAG = "TiledBackground";
+    private static final int TILE_SIZE = 256;
+    /**
+     * Screens worth of tiles kept in the cache
+     */
+    private static final int CACHE_SCREENS = 4;
+    private static final float SQRT2 = 1.4142135f;
+
+    // Shared by all the editors, tiles are decoded one at a time
+    private static final ExecutorService sDecodeExecutor = Executors.newSingleThreadExecutor();
+
+    private final Context mContext;
+    private final View mView;
+    private final LruCache<Long, Bitmap> mTiles;
+    private final HashSet<Long> mPendingTiles = new HashSet<>();
+    private final Paint mTilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF mDstRect = new RectF();
+    private final RectF mImageRect = new RectF();
+    private final Matrix mImageMatrix = new Matrix();
+    private final Matrix mInverseMatrix = new Matrix();
+    private final Matrix mTileMatrix = new Matrix();
+
+    @Nullable
+    private Uri mUri;
+    private ImageOrientation mOrientation = ImageOrientation.NORMAL;
+    private int mBaseWidth;
+    // Raw size of the image, 0 until the decoder is open
+    private int mImageWidth, mImageHeight;
+    private volatile int mGeneration = 0;
+    // Tile range drawn by the last draw(), the tiles scrolled out of view before being decoded are skipped
+    private volatile int mVisibleSampleSize, mVisibleFirstColumn, mVisibleLastColumn, mVisibleFirstRow, mVisibleLastRow;
+
+    // Decode thread only
+    @Nullable
+    private BitmapRegionDecoder mDecoder;
+
+    public TiledBackground(@NonNull Context context, @NonNull View view) {
+        mContext = context.getApplicationContext();
+        mView = view;
+        DisplayMetrics dm = context.getResources().getDisplayMetrics();
+        int maxBytes = CACHE_SCREENS * dm.widthPixels * dm.heightPixels * 4;
+        mTiles = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap tile) {
+                return tile.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * @param uri         source of the background, null to release the decoder
+     * @param orientation applied when drawing
+     * @param baseWidth   raw width of the bitmap drawn below the tiles, tiles are decoded only when they are sharper
+     */
+    public void setSource(@Nullable final Uri uri, @NonNull ImageOrientation orientation, int baseWidth) {
+        if (uri != null && uri.equals(mUri) && orientation == mOrientation && baseWidth == mBaseWidth) {
+            return;
+        }
+        mUri = uri;
+        mOrientation = orientation;
+        mBaseWidth = baseWidth;
+        mImageWidth = 0;
+        mImageHeight = 0;
+        mTiles.evictAll();
+        mPendingTiles.clear();
+        final int generation = ++mGeneration;
+        sDecodeExecutor.execute(() -> {
+            if (mDecoder != null) {
+                mDecoder.recycle();
+                mDecoder = null;
+            }
+            if (uri == null || generation != mGeneration) {
+                return;
+            }
+            try (InputStream stream = BackgroundLoader.openStream(mContext, uri)) {
+                mDecoder = stream != null ? BitmapRegionDecoder.newInstance(stream, false) : null;
+            } catch (IOException e) {
+                Log.e(TAG, "failed to open " + uri + ": " + e);
+            }
+            if (mDecoder == null) {
+                return;
+            }
+            final int width = mDecoder.getWidth(), height = mDecoder.getHeight();
+            mView.post(() -> {
+                if (generation == mGeneration) {
+                    mImageWidth = width;
+                    mImageHeight = height;
+                    mView.invalidate();
+                }
+            });
+        });
+    }
+
+    /**
+     * Drop the decoded tiles, they are decoded again when needed
+     */
+    public void trimMemory() {
+        mTiles.evictAll();
+    }
+
+    /**
+     * Draw the tiles covering visibleRect, requesting the missing ones.
+     *
+     * @param canvas      canvas in content coordinates, scaled by zoom
+     * @param visibleRect visible part of the content
+     * @param width       size of the content, as for BackgroundCache.draw()
+     * @param height      size of the content
+     * @param zoom        screen pixels per content pixel
+     */
+    public void draw(@NonNull Canvas canvas, @NonNull RectF visibleRect, int width, int height,
+                     String contentMode, float zoom) {
+        if (mImageWidth <= 0 || mImageHeight <= 0 || width <= 0 || height <= 0) {
+            return;
+        }
+        mDstRect.set(Utility.fillImage(mImageWidth, mImageHeight, mOrientation, width, height, contentMode));
+        mOrientation.mapToRect(mImageWidth, mImageHeight, mDstRect, mImageMatrix);
+
+        // Mip level closest to the displayed resolution
+        float imagePixelsPerScreenPixel = mOrientation.getOrientedWidth(mImageWidth, mImageHeight) / (mDstRect.width() * zoom);
+        int sampleSize = Integer.highestOneBit(Math.max(1, (int) (imagePixelsPerScreenPixel * SQRT2)));
+        if (mImageWidth / sampleSize <= mBaseWidth) {
+            // Not sharper than the resized background
+            return;
+        }
+
+        // Visible part of the raw image
+        mImageMatrix.invert(mInverseMatrix);
+        mInverseMatrix.mapRect(mImageRect, visibleRect);
+        if (!mImageRect.intersect(0, 0, mImageWidth, mImageHeight)) {
+            return;
+        }
+        int tileSpan = TILE_SIZE * sampleSize;
+        int firstColumn = (int) (mImageRect.left / tileSpan), lastColumn = (int) ((mImageRect.right - 1) / tileSpan);
+        int firstRow = (int) (mImageRect.top / tileSpan), lastRow = (int) ((mImageRect.bottom - 1) / tileSpan);
+
+        mVisibleSampleSize = sampleSize;
+        mVisibleFirstColumn = firstColumn;
+        mVisibleLastColumn = lastColumn;
+        mVisibleFirstRow = firstRow;
+        mVisibleLastRow = lastRow;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                long key = tileKey(sampleSize, column, row);
+                Bitmap tile = mTiles.get(key);
+                if (tile == null) {
+                    requestTile(key, sampleSize, column, row);
+                    continue;
+                }
+                mTileMatrix.setScale(sampleSize, sampleSize);
+                mTileMatrix.postTranslate(column * tileSpan, row * tileSpan);
+                mTileMatrix.postConcat(mImageMatrix);
+                canvas.drawBitmap(tile, mTileMatrix, mTilePaint);
+            }
+        }
+    }
+
+    private static long tileKey(int sampleSize, int column, int row) {
+        return ((long) sampleSize << 48) | ((long) column << 24) | row;
+    }
+
+    /**
+     * NOTE: called on the decode thread, the range may be read while draw() updates it.
+     * A tile skipped because of that is requested again by the next draw(), see requestTile()
+     */
+    private boolean isTileVisible(int sampleSize, int column, int row) {
+        return sampleSize == mVisibleSampleSize
+                && column >= mVisibleFirstColumn && column <= mVisibleLastColumn
+                && row >= mVisibleFirstRow && row <= mVisibleLastRow;
+    }
+
+    private void requestTile(final long key, final int sampleSize, final int column, final int row) {
+        if (!mPendingTiles.add(key)) {
+            return;
+        }
+        final int generation = mGeneration;
+        int tileSpan = TILE_SIZE * sampleSize;
+        final Rect region = new Rect(column * tileSpan, row * tileSpan,
+                Math.min((column + 1) * tileSpan, mImageWidth), Math.min((row + 1) * tileSpan, mImageHeight));
+        sDecodeExecutor.execute(() -> {
+            Bitmap tile = null;
+            final boolean isSkipped = !isTileVisible(sampleSize, column, row);
+            if (generation == mGeneration && mDecoder != null && !isSkipped) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sampleSize;
+                try {
+                    tile = mDecoder.decodeRegion(region, options);
+                } catch (IllegalArgumentException | OutOfMemoryError e) {
+                    Log.e(TAG, "failed to decode " + region + ": " + e);
+                }
+            }
+            final Bitmap decodedTile = tile;
+            mView.post(() -> {
+                if (generation != mGeneration) {
+                    return;
+                }
+                mPendingTiles.remove(key);
+                if (decodedTile != null) {
+                    mTiles.put(key, decodedTile);
+                    mView.invalidate();
+                } else if (isSkipped) {
+                    // Requested again if it is still visible
+                    mView.invalidate();
+                }
+            });
+        });
+    }
+}
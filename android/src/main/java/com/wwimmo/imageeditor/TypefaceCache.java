@@ -0,0 +1,36 @@
+package com.wwimmo.imageeditor;
+
+import android.content.Context;
+import android.graphics.Typeface;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+
+/**
+ * Typefaces of the text layers and canvas texts, by font name.
+ * <p>
+ * A font is first looked up in the assets (e.g. "fonts/Roboto.ttf"), then as a system family name.
+ * Creating a typeface from assets reads and parses the font file, so it's done once per process
+ * and may be done ahead of time from a background thread, see ImageEditorModule.prefetch().
+ */
+public final class TypefaceCache {
+    private static final HashMap<String, Typeface> sTypefaces = new HashMap<>();
+
+    private TypefaceCache() {
+    }
+
+    @NonNull
+    public static synchronized Typeface get(@NonNull Context context, @NonNull String font) {
+        Typeface typeface = sTypefaces.get(font);
+        if (typeface == null) {
+            try {
+                typeface = Typeface.createFromAsset(context.getAssets(), font);
+            } catch (Exception ex) {
+                typeface = Typeface.create(font, Typeface.NORMAL);
+            }
+            sTypefaces.put(font, typeface);
+        }
+        return typeface;
+    }
+}
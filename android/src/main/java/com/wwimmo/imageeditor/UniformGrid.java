@@ -0,0 +1,228 @@
+package com.wwimmo.imageeditor;
+
+import android.graphics.RectF;
+import android.util.LongSparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Uniform grid over the bounds of items, used to find the items around a point or intersecting
+ * a rectangle without visiting every item. See StrokeGrid and EntityIndex.
+ * <p>
+ * Every item gets an order when it's added, query() results are sorted by it.
+ * The bounds are taken when the item is added or updated.
+ */
+public class UniformGrid<T> {
+    public interface BoundsProvider<T> {
+        /**
+         * @return false if the item has no area (yet), it isn't registered in any cell then
+         */
+        boolean getBounds(@NonNull T item, @NonNull RectF out);
+    }
+
+    public static final class Entry<T> {
+        public final T item;
+        public final long order;
+        final RectF bounds = new RectF();
+        int left, top, right, bottom;
+        boolean registered = false;
+        // Stamp of the last query() which visited the entry, an entry is registered in several cells
+        int queryStamp = 0;
+
+        Entry(T item, long order) {
+            this.item = item;
+            this.order = order;
+        }
+    }
+
+    private final int mCellSize;
+    private final BoundsProvider<T> mBoundsProvider;
+    // Keyed by key(cx, cy). NOTE: a primitive long map, lookups run for every stroke sample
+    private final LongSparseArray<ArrayList<Entry<T>>> mCells = new LongSparseArray<>();
+    private long mNextOrder = 0;
+
+    private static final Comparator<Entry<?>> ORDER_COMPARATOR = (a, b) -> Long.compare(a.order, b.order);
+    /**
+     * Scratch objects reused by query()
+     * NOTE: saved as field variables in order to avoid allocations on every redraw
+     */
+    private final ArrayList<Entry<T>> mQueryResult = new ArrayList<>();
+    private int mQueryStamp = 0;
+
+    public UniformGrid(int cellSize, @NonNull BoundsProvider<T> boundsProvider) {
+        mCellSize = cellSize;
+        mBoundsProvider = boundsProvider;
+    }
+
+    /**
+     * Register the item after the ones added before.
+     */
+    @NonNull
+    public Entry<T> add(@NonNull T item) {
+        Entry<T> entry = new Entry<>(item, mNextOrder++);
+        register(entry);
+        return entry;
+    }
+
+    /**
+     * Refresh the cells of the entry after the bounds of its item changed.
+     */
+    public void update(@NonNull Entry<T> entry) {
+        unregister(entry);
+        register(entry);
+    }
+
+    /**
+     * Register the entry in the cells it covers since its item grew, the item mustn't have moved.
+     * NOTE: unlike update(), only the new cells are visited, so it's cheap enough to run for every sample
+     */
+    public void extend(@NonNull Entry<T> entry) {
+        if (!entry.registered) {
+            register(entry);
+            return;
+        }
+        if (!mBoundsProvider.getBounds(entry.item, entry.bounds)) {
+            unregister(entry);
+            return;
+        }
+        int left = Math.min(entry.left, cell(entry.bounds.left));
+        int top = Math.min(entry.top, cell(entry.bounds.top));
+        int right = Math.max(entry.right, cell(entry.bounds.right));
+        int bottom = Math.max(entry.bottom, cell(entry.bounds.bottom));
+        for (int cx = left; cx <= right; cx++) {
+            for (int cy = top; cy <= bottom; cy++) {
+                if (cx < entry.left || cx > entry.right || cy < entry.top || cy > entry.bottom) {
+                    addToCell(entry, cx, cy);
+                }
+            }
+        }
+        entry.left = left;
+        entry.top = top;
+        entry.right = right;
+        entry.bottom = bottom;
+    }
+
+    public void remove(@NonNull Entry<T> entry) {
+        unregister(entry);
+    }
+
+    /**
+     * Unregister everything, the entries returned so far mustn't be used anymore
+     */
+    public void clear() {
+        mCells.clear();
+    }
+
+    /**
+     * @return the highest order assigned so far, -1 if none
+     */
+    public long getLastOrder() {
+        return mNextOrder - 1;
+    }
+
+    /**
+     * Entries registered in the cell containing the point, in no particular order.
+     *
+     * @return null if there are none. NOTE: the list belongs to the grid, it mustn't be modified
+     */
+    @Nullable
+    public ArrayList<Entry<T>> getCell(float x, float y) {
+        return mCells.get(key(cell(x), cell(y)));
+    }
+
+    /**
+     * @return true if the bounds of the entry contain the point
+     */
+    public static boolean contains(@NonNull Entry<?> entry, float x, float y) {
+        return entry.registered && entry.bounds.contains(x, y);
+    }
+
+    /**
+     * Entries whose bounds intersect the rect, sorted by order.
+     *
+     * @return NOTE: the list is reused by the next call
+     */
+    public ArrayList<Entry<T>> query(@NonNull RectF rect) {
+        ArrayList<Entry<T>> result = mQueryResult;
+        result.clear();
+        int stamp = ++mQueryStamp;
+        int left = cell(rect.left), top = cell(rect.top), right = cell(rect.right), bottom = cell(rect.bottom);
+        for (int cx = left; cx <= right; cx++) {
+            for (int cy = top; cy <= bottom; cy++) {
+                ArrayList<Entry<T>> entries = mCells.get(key(cx, cy));
+                if (entries == null) {
+                    continue;
+                }
+                for (int i = 0; i < entries.size(); i++) {
+                    Entry<T> entry = entries.get(i);
+                    if (entry.queryStamp != stamp) {
+                        entry.queryStamp = stamp;
+                        if (entry.bounds.intersects(rect.left, rect.top, rect.right, rect.bottom)) {
+                            result.add(entry);
+                        }
+                    }
+                }
+            }
+        }
+        Collections.sort(result, ORDER_COMPARATOR);
+        return result;
+    }
+
+    private void register(Entry<T> entry) {
+        if (!mBoundsProvider.getBounds(entry.item, entry.bounds)) {
+            return;
+        }
+        entry.left = cell(entry.bounds.left);
+        entry.top = cell(entry.bounds.top);
+        entry.right = cell(entry.bounds.right);
+        entry.bottom = cell(entry.bounds.bottom);
+        for (int cx = entry.left; cx <= entry.right; cx++) {
+            for (int cy = entry.top; cy <= entry.bottom; cy++) {
+                addToCell(entry, cx, cy);
+            }
+        }
+        entry.registered = true;
+    }
+
+    private void addToCell(Entry<T> entry, int cx, int cy) {
+        long key = key(cx, cy);
+        ArrayList<Entry<T>> entries = mCells.get(key);
+        if (entries == null) {
+            entries = new ArrayList<>();
+            mCells.put(key, entries);
+        }
+        entries.add(entry);
+    }
+
+    private void unregister(Entry<T> entry) {
+        if (!entry.registered) {
+            return;
+        }
+        for (int cx = entry.left; cx <= entry.right; cx++) {
+            for (int cy = entry.top; cy <= entry.bottom; cy++) {
+                long key = key(cx, cy);
+                ArrayList<Entry<T>> entries = mCells.get(key);
+                if (entries != null) {
+                    entries.remove(entry);
+                    if (entries.isEmpty()) {
+                        mCells.remove(key);
+                    }
+                }
+            }
+        }
+        entry.registered = false;
+    }
+
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate / mCellSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}
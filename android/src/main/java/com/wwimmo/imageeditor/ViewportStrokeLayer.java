@@ -0,0 +1,152 @@
+package com.wwimmo.imageeditor;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Strokes rendered at screen resolution while the view is zoomed in, see ImageEditor.drawViewport().
+ * <p>
+ * The visible strokes are rasterized through the viewport matrix, then the new segments of the stroke
+ * in progress are drawn into the layer as they come, like mDrawingBitmap at zoom 1. So a frame is a blit,
+ * and the strokes are rasterized again only when the viewport changes or the layer is invalidated.
+ * The layer has to be invalidated when the strokes change other than by new points.
+ * <p>
+ * A translucent stroke in progress is drawn opaque into a second layer, composited with the stroke alpha.
+ */
+public class ViewportStrokeLayer {
+
+    private static final class Layer {
+        Bitmap bitmap;
+        Canvas canvas;
+
+        /**
+         * Clear the layer, (re)allocating it when the size changed
+         */
+        Canvas prepare(int width, int height, Matrix matrix) {
+            if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+                release();
+                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                canvas = new Canvas(bitmap);
+            } else {
+                canvas.setMatrix(null);
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            }
+            canvas.setMatrix(matrix);
+            return canvas;
+        }
+
+        void release() {
+            if (bitmap != null) {
+                bitmap.recycle();
+                bitmap = null;
+                canvas = null;
+            }
+        }
+    }
+
+    private final Layer mStrokes = new Layer(), mTranslucent = new Layer();
+    // Viewport the layers are rendered through
+    private final Matrix mMatrix = new Matrix();
+    private int mWidth, mHeight;
+    // Stroke in progress drawn into mTranslucent, null if none
+    @Nullable
+    private SketchData mTranslucentPath;
+    private boolean mIsValid = false;
+
+    public void invalidate() {
+        mIsValid = false;
+    }
+
+    public void release() {
+        mStrokes.release();
+        mTranslucent.release();
+        mTranslucentPath = null;
+        mIsValid = false;
+    }
+
+    /**
+     * Rasterize the strokes again if the layer was invalidated, or the viewport or the size changed
+     *
+     * @param visibleRect visible part of the content
+     * @param currentPath stroke in progress, null if none
+     */
+    public void update(int width, int height, @NonNull Matrix viewport, @NonNull RectF visibleRect,
+                       @NonNull StrokeGrid strokeGrid, @Nullable SketchData currentPath) {
+        if (mIsValid && mWidth == width && mHeight == height && mMatrix.equals(viewport)) {
+            return;
+        }
+        mWidth = width;
+        mHeight = height;
+        mMatrix.set(viewport);
+        mTranslucentPath = currentPath != null && currentPath.isTranslucent ? currentPath : null;
+
+        Canvas canvas = mStrokes.prepare(width, height, viewport);
+        List<SketchData> paths = strokeGrid.query(visibleRect);
+        for (int i = 0; i < paths.size(); i++) {
+            SketchData path = paths.get(i);
+            if (path != mTranslucentPath) {
+                path.draw(canvas);
+            }
+        }
+        if (mTranslucentPath != null) {
+            mTranslucentPath.drawCoverage(mTranslucent.prepare(width, height, viewport));
+        }
+        mIsValid = true;
+    }
+
+    /**
+     * Draw the last segment of the stroke in progress, see SketchData.drawLastPoint()
+     */
+    public void drawLastPoint(@NonNull SketchData currentPath) {
+        if (!mIsValid) {
+            return;
+        }
+        if (currentPath.isTranslucent && currentPath != mTranslucentPath) {
+            // Started after the layers were rendered, the translucent layer has to be set up
+            mIsValid = false;
+            return;
+        }
+        currentPath.drawLastPoint(currentPath.isTranslucent ? mTranslucent.canvas : mStrokes.canvas);
+    }
+
+    /**
+     * Merge the translucent stroke in progress into the strokes once it's ended
+     *
+     * @param paint paint with the alpha of the stroke
+     */
+    public void commitTranslucent(@NonNull Paint paint) {
+        if (mIsValid && mTranslucentPath != null) {
+            Canvas canvas = mStrokes.canvas;
+            canvas.save();
+            canvas.setMatrix(null);
+            canvas.drawBitmap(mTranslucent.bitmap, 0, 0, paint);
+            canvas.restore();
+        }
+        mTranslucentPath = null;
+    }
+
+    /**
+     * Draw the layers, in view coordinates
+     *
+     * @param translucentPaint paint with the alpha of the translucent stroke in progress
+     */
+    public void draw(@NonNull Canvas canvas, @NonNull Paint translucentPaint) {
+        if (!mIsValid) {
+            return;
+        }
+        canvas.drawBitmap(mStrokes.bitmap, 0, 0, null);
+        if (mTranslucentPath != null) {
+            canvas.drawBitmap(mTranslucent.bitmap, 0, 0, translucentPaint);
+        }
+    }
+}
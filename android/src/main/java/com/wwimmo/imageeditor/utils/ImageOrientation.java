@@ -0,0 +1,76 @@
+package com.wwimmo.imageeditor.utils;
+
+import android.graphics.Matrix;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Orientation of a decoded image (EXIF), applied when the image is drawn
+ * instead of materialising a rotated copy of the bitmap.
+ * <p>
+ * The image is rotated first, then mirrored horizontally.
+ */
+public final class ImageOrientation {
+    public static final ImageOrientation NORMAL = new ImageOrientation(0, false);
+
+    public final int rotationInDegrees;
+    public final boolean isMirrored;
+
+    private ImageOrientation(int rotationInDegrees, boolean isMirrored) {
+        this.rotationInDegrees = rotationInDegrees;
+        this.isMirrored = isMirrored;
+    }
+
+    @NonNull
+    public static ImageOrientation fromExif(int exifOrientation) {
+        switch (exifOrientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                return new ImageOrientation(0, true);
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                return new ImageOrientation(180, false);
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                return new ImageOrientation(180, true);
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                return new ImageOrientation(90, true);
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                return new ImageOrientation(90, false);
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                return new ImageOrientation(270, true);
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return new ImageOrientation(270, false);
+            default:
+                return NORMAL;
+        }
+    }
+
+    /**
+     * true if width and height are swapped on display
+     */
+    public boolean isTransposed() {
+        return rotationInDegrees == 90 || rotationInDegrees == 270;
+    }
+
+    public int getOrientedWidth(int width, int height) {
+        return isTransposed() ? height : width;
+    }
+
+    public int getOrientedHeight(int width, int height) {
+        return isTransposed() ? width : height;
+    }
+
+    /**
+     * Matrix drawing a width x height bitmap, in display orientation, into dst.
+     */
+    public void mapToRect(int width, int height, @NonNull RectF dst, @NonNull Matrix out) {
+        out.reset();
+        out.postTranslate(-width * 0.5F, -height * 0.5F);
+        out.postRotate(rotationInDegrees);
+        if (isMirrored) {
+            out.postScale(-1.0F, 1.0F);
+        }
+        out.postScale(dst.width() / getOrientedWidth(width, height), dst.height() / getOrientedHeight(width, height));
+        out.postTranslate(dst.centerX(), dst.centerY());
+    }
+}
@@ -30,6 +30,15 @@ public final class Utility {
         }
     }
 
+    /**
+     * Same as fillImage(), for an image drawn with the given orientation
+     */
+    public static RectF fillImage(int imgWidth, int imgHeight, @NonNull ImageOrientation orientation,
+                                  float targetWidth, float targetHeight, String mode) {
+        return fillImage(orientation.getOrientedWidth(imgWidth, imgHeight), orientation.getOrientedHeight(imgWidth, imgHeight),
+                targetWidth, targetHeight, mode);
+    }
+
     public static int convertDpToPx(DisplayMetrics displayMetrics, float dp) {
         return (int) (dp * displayMetrics.density);
     }
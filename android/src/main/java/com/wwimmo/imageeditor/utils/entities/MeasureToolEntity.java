@@ -3,6 +3,7 @@ package com.wwimmo.imageeditor.utils.entities;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PointF;
@@ -49,14 +50,26 @@ public class MeasureToolEntity extends MotionEntity {
     private final String endpointImage;
     private int mStrokeColor;
     private Paint mPaint;
-    private Bitmap mBitmap;
-    private Canvas mCanvas;
     private PointF selectedPoint;
     private String mCurrentText;
     private float mScaledDensity;
     private WeakReference<Bitmap> backgroundRef;
     private Bitmap mZoomBitmap;
     private Canvas mZoomCanvas;
+    /**
+     * Lens objects, reused by drawZoomLens()
+     */
+    private final Path mLensPath = new Path();
+    // Transformation of the background into the canvas, see setBackground()
+    private final Matrix mBackgroundMatrix = new Matrix();
+    private final RectF mLensDrawingRect = new RectF();
+    /**
+     * Label objects, reused by drawText(). mTextLayout is built again when the text changes
+     */
+    private final Rect mTextRect = new Rect();
+    private final RectF mTextBgRect = new RectF();
+    private StaticLayout mTextLayout;
+    private final PointF mEndpointCenter = new PointF();
     private boolean focused;
     private Bitmap endpointBitmap;
     private RectF endpointRect;
@@ -100,13 +113,11 @@ public class MeasureToolEntity extends MotionEntity {
     }
 
     private void updateEntity(boolean moveToPreviousCenter) {
-        configureBitmap(null);
+        float width = getWidth();
+        float height = getHeight();
 
-        float width = this.mBitmap.getWidth();
-        float height = this.mBitmap.getHeight();
-
-        float widthAspect = 1.0F * canvasWidth / this.mBitmap.getWidth();
-        float heightAspect = 1.0F * canvasHeight / this.mBitmap.getHeight();
+        float widthAspect = 1.0F * canvasWidth / getWidth();
+        float heightAspect = 1.0F * canvasHeight / getHeight();
 
         // fit the smallest size
         holyScale = Math.min(widthAspect, heightAspect);
@@ -133,14 +144,23 @@ public class MeasureToolEntity extends MotionEntity {
 //        super.updateMatrix();
     }
 
-    private void configureBitmap(@Nullable Paint paint) {
+    /**
+     * The tool covers the whole canvas, its points can be anywhere on it
+     */
+    @Override
+    public void getBounds(@NonNull RectF out) {
+        out.set(0, 0, getWidth(), getHeight());
+    }
+
+    /**
+     * Draw the measurement straight to the target canvas (the entity matrix is the identity),
+     * so only the pixels around the points, the label and the lens are touched.
+     */
+    private void drawMeasurement(Canvas canvas, @Nullable Paint paint) {
         updatePaint(paint);
-        if (this.mBitmap == null) {
-            this.mBitmap = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
-            this.mCanvas = new Canvas(this.mBitmap);
-        }
-        this.mCanvas.save();
-        this.mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        // the paint is modified while drawing, start from a clean state
+        resetPaint();
+        canvas.save();
         float savedStrokeWidth = mPaint.getStrokeWidth();
         float outerRadiusFull = outerRadius + innerRadius + strokeWidth / 2f;
 
@@ -154,12 +174,12 @@ public class MeasureToolEntity extends MotionEntity {
                     this.mPaint.setStrokeWidth(strokeWidth * 2);
                     this.mPaint.setStyle(Paint.Style.STROKE);
                     float touchArea = getTouchRadius();
-                    this.mCanvas.drawCircle(pointF.x, pointF.y, touchArea, this.mPaint);
+                    canvas.drawCircle(pointF.x, pointF.y, touchArea, this.mPaint);
                 } else if (currentPoints.size() > 1) {
                     this.mPaint.setAlpha(alpha);
                     this.mPaint.setStyle(Paint.Style.STROKE);
                     this.mPaint.setStrokeWidth(strokeWidth * 3);
-                    this.mCanvas.drawCircle(pointF.x, pointF.y, outerRadiusFull, this.mPaint);
+                    canvas.drawCircle(pointF.x, pointF.y, outerRadiusFull, this.mPaint);
                 }
                 this.mPaint.setAlpha(255);
                 this.mPaint.setStyle(Paint.Style.FILL);
@@ -167,22 +187,22 @@ public class MeasureToolEntity extends MotionEntity {
                 if (i > 0) {
                     // path between points
                     PointF prevPointF = currentPoints.get(i - 1);
-                    drawConnection(prevPointF, pointF, false);
+                    drawConnection(canvas, prevPointF, pointF, false);
                 }
 
-                this.drawPoint(pointF, this.mPaint);
+                this.drawPoint(canvas, pointF, this.mPaint);
 
                 mPaint.setStrokeWidth(savedStrokeWidth);
 
                 if (i == 1 && mCurrentText != null) {
                     drawText(
                             currentPoints.get(0), pointF,
-                            mCanvas, mTextPaint, mPaint, mCurrentText
+                            canvas, mTextPaint, mPaint, mCurrentText
                     );
                 }
             }
             if (selectedPoint != null && backgroundRef.get() != null && focused) {
-                this.drawZoomLens(selectedPoint, backgroundRef.get());
+                this.drawZoomLens(canvas, selectedPoint, backgroundRef.get());
             }
             mPaint.setStrokeWidth(savedStrokeWidth);
         }
@@ -192,23 +212,23 @@ public class MeasureToolEntity extends MotionEntity {
             boolean secondVisited = this.pointsVisited.get(1);
             if (!secondVisited && selectedPoint != this.currentPoints.get(1)) {
                 // Highlight second
-                PointF imageCenterPoint = new PointF();
+                PointF imageCenterPoint = mEndpointCenter;
                 PointF oppositePoint = this.currentPoints.get(1);
                 imageCenterPoint.set(oppositePoint.x, oppositePoint.y + outerRadiusFull + 2 * strokeWidth);
-                this.drawImageEndpoint(imageCenterPoint, mPaint);
+                this.drawImageEndpoint(canvas, imageCenterPoint, mPaint);
             } else if (!firstVisited && selectedPoint != this.currentPoints.get(0)) {
                 // Highlight first
-                PointF imageCenterPoint = new PointF();
+                PointF imageCenterPoint = mEndpointCenter;
                 PointF oppositePoint = this.currentPoints.get(0);
                 imageCenterPoint.set(oppositePoint.x, oppositePoint.y + outerRadiusFull + 2 * strokeWidth);
-                this.drawImageEndpoint(imageCenterPoint, mPaint);
+                this.drawImageEndpoint(canvas, imageCenterPoint, mPaint);
             }
         }
 
-        this.mCanvas.restore();
+        canvas.restore();
     }
 
-    private void drawZoomLens(PointF centerPoint, Bitmap background) {
+    private void drawZoomLens(Canvas canvas, PointF centerPoint, Bitmap background) {
         float halfLensSize = lensSize / 2f;
         float lensOffset = strokeWidth + halfLensSize + touchRadius / 2f;
         float centerX = centerPoint.x - lensOffset;
@@ -222,54 +242,51 @@ public class MeasureToolEntity extends MotionEntity {
 
 
         // Add zooming area
-        if (mZoomBitmap == null) {
+        boolean isNewLens = mZoomBitmap == null;
+        if (isNewLens) {
             mZoomBitmap = Bitmap.createBitmap(lensSize, lensSize, Bitmap.Config.ARGB_8888);
             mZoomCanvas = new Canvas(this.mZoomBitmap);
         }
 
-        int zoomedHalfWidth = lensSize / ZOOM / 2;
-        int zoomedHalfHeight = lensSize / ZOOM / 2;
-        float scaleXY = (float) background.getWidth() / getWidth();
-        int srcCenterX = (int) (centerPoint.x * scaleXY);
-        int srcCenterY = (int) (centerPoint.y * scaleXY);
-        Rect srcRect = new Rect(
-                srcCenterX - zoomedHalfWidth,
-                srcCenterY - zoomedHalfHeight,
-                srcCenterX + zoomedHalfWidth,
-                srcCenterY + zoomedHalfHeight
-        );
-
-        mZoomCanvas.save();
-
-        // Draw the scaled image
-        Rect targetRect = new Rect(0, 0, lensSize, lensSize);
-        mZoomCanvas.save();
-        mZoomCanvas.drawBitmap(background, srcRect, targetRect, null);
-        mZoomCanvas.restore();
+        // The zoomed image changes only with the selected point or the background
+        if (isNewLens || isContentDirty()) {
+            // Draw the background as it's drawn on the canvas (content mode, orientation),
+            // zoomed around the selected point
+            mZoomCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            mZoomCanvas.save();
+            mZoomCanvas.translate(lensSize / 2f, lensSize / 2f);
+            mZoomCanvas.scale(ZOOM, ZOOM);
+            mZoomCanvas.translate(-centerPoint.x, -centerPoint.y);
+            mZoomCanvas.concat(mBackgroundMatrix);
+            mZoomCanvas.drawBitmap(background, 0, 0, null);
+            mZoomCanvas.restore();
+        }
         // Post effect
-        mCanvas.save();
+        canvas.save();
 
         // Create a circular path
-        Path path = new Path();
+        Path path = mLensPath;
+        path.rewind();
         path.addCircle(centerX, centerY, halfLensSize, Path.Direction.CW);
         // Clip the canvas to the circular path
-        mCanvas.clipPath(path);
-        RectF drawingRect = new RectF(
+        canvas.clipPath(path);
+        RectF drawingRect = mLensDrawingRect;
+        drawingRect.set(
                 centerX - halfLensSize,
                 centerY - halfLensSize,
                 centerX + halfLensSize,
                 centerY + halfLensSize
         );
-        mCanvas.drawBitmap(mZoomBitmap, null, drawingRect, null);
-        mCanvas.restore();
+        canvas.drawBitmap(mZoomBitmap, null, drawingRect, null);
+        canvas.restore();
 
 
         this.mPaint.setStyle(Paint.Style.STROKE);
         this.mPaint.setStrokeWidth(strokeWidth);
-        this.mCanvas.drawCircle(centerX, centerY, halfLensSize, this.mPaint);
+        canvas.drawCircle(centerX, centerY, halfLensSize, this.mPaint);
 
         this.mPaint.setStyle(Paint.Style.FILL);
-        this.mCanvas.drawCircle(centerX, centerY, strokeWidth / 2f, this.mPaint);
+        canvas.drawCircle(centerX, centerY, strokeWidth / 2f, this.mPaint);
     }
 
 
@@ -355,18 +372,21 @@ public class MeasureToolEntity extends MotionEntity {
 
 
     private void drawText(PointF a, PointF b, Canvas canvas, TextPaint textPaint, Paint bgPaint, String text) {
-        Rect textRect = new Rect();
+        Rect textRect = mTextRect;
         textPaint.getTextBounds(text, 0, text.length(), textRect);
         int textWidth = (int) (textRect.width() + Math.max(2, mScaledDensity * 2));
-        StaticLayout sl = new StaticLayout(
-                text,
-                textPaint,
-                textWidth,
-                Layout.Alignment.ALIGN_NORMAL,
-                1.0f,
-                1.0f,
-                true
-        );
+        if (mTextLayout == null || mTextLayout.getWidth() != textWidth) {
+            mTextLayout = new StaticLayout(
+                    text,
+                    textPaint,
+                    textWidth,
+                    Layout.Alignment.ALIGN_NORMAL,
+                    1.0f,
+                    1.0f,
+                    true
+            );
+        }
+        StaticLayout sl = mTextLayout;
 
         canvas.save();
 
@@ -391,7 +411,7 @@ public class MeasureToolEntity extends MotionEntity {
         canvas.translate(midX, midY);
         // background first
         bgPaint.setStyle(Paint.Style.FILL);
-        RectF bgRect = new RectF();
+        RectF bgRect = mTextBgRect;
         bgRect.set(
                 - textBoxPadding - halfTextWidth,
                 -halfTextHeight,
@@ -407,20 +427,20 @@ public class MeasureToolEntity extends MotionEntity {
         canvas.restore();
     }
 
-    private void drawConnection(PointF startPoint, PointF endPoint, boolean hasOffset) {
+    private void drawConnection(Canvas canvas, PointF startPoint, PointF endPoint, boolean hasOffset) {
         if (hasOffset) {
             float radius = endpointBitmap != null ? endpointBitmap.getWidth() * ENDPOINT_OFFSET_RATIO : OUTER_RADIUS_CONNECTION;
             PointF newEnd = getOuterRadiusPoint(endPoint, startPoint, radius);
             PointF newStart = getOuterRadiusPoint(startPoint, endPoint, radius);
-            mCanvas.drawLine(newStart.x, newStart.y, newEnd.x, newEnd.y, mPaint);
+            canvas.drawLine(newStart.x, newStart.y, newEnd.x, newEnd.y, mPaint);
         } else {
             mPaint.setStrokeWidth(4);
-            mCanvas.drawLine(startPoint.x, startPoint.y, endPoint.x, endPoint.y, mPaint);
+            canvas.drawLine(startPoint.x, startPoint.y, endPoint.x, endPoint.y, mPaint);
         }
 
     }
 
-    private void drawLineIndicator(PointF startPoint, PointF endPoint, int size, Paint mPaint) {
+    private void drawLineIndicator(Canvas canvas, PointF startPoint, PointF endPoint, int size, Paint mPaint) {
         double thetaTop = getAngleBetweenPoints(startPoint, endPoint) - Math.PI / 2;
         double thetaBottom = thetaTop - Math.PI;
         // for the start point
@@ -429,7 +449,7 @@ public class MeasureToolEntity extends MotionEntity {
 
         float x2 = (float) (startPoint.x + size * Math.cos(thetaBottom));
         float y2 = (float) (startPoint.y + size * Math.sin(thetaBottom));
-        mCanvas.drawLine(x1, y1, x2, y2, mPaint);
+        canvas.drawLine(x1, y1, x2, y2, mPaint);
 
         // for the end pont
         x1 = (float) (endPoint.x + size * Math.cos(thetaTop));
@@ -437,24 +457,28 @@ public class MeasureToolEntity extends MotionEntity {
 
         x2 = (float) (endPoint.x + size * Math.cos(thetaBottom));
         y2 = (float) (endPoint.y + size * Math.sin(thetaBottom));
-        mCanvas.drawLine(x1, y1, x2, y2, mPaint);
+        canvas.drawLine(x1, y1, x2, y2, mPaint);
     }
 
     private void updatePaint(@Nullable Paint paint) {
         if (paint != null && isSelected()) {
             this.mStrokeColor = paint.getColor();
         }
+        updateStroke(this.mStrokeColor, STROKE_WIDTH);
+    }
 
-        this.mPaint = new Paint();
+    private void resetPaint() {
+        if (this.mPaint == null) {
+            this.mPaint = new Paint();
+        } else {
+            this.mPaint.reset();
+        }
         this.mPaint.setColor(this.mStrokeColor);
 
         // This is essential for the overlapping paths to not result in a weird artefact
         this.mPaint.setStrokeJoin(Paint.Join.BEVEL);
 
-        // TODO: border gets pixelated because it's just done once (initially)!
         this.mPaint.setAntiAlias(true);
-
-        // TODO: FIX THIS by somehow scaling the shape as well and not just the bitmap...
         this.mPaint.setFilterBitmap(true);
         this.mPaint.setDither(true);
         this.mPaint.setStyle(Paint.Style.STROKE);
@@ -463,8 +487,8 @@ public class MeasureToolEntity extends MotionEntity {
 
     @Override
     protected void drawContent(@NonNull Canvas canvas, @Nullable Paint drawingPaint) {
-        configureBitmap(drawingPaint);
-        canvas.drawBitmap(this.mBitmap, matrix, this.mPaint);
+        drawMeasurement(canvas, drawingPaint);
+        onContentUpdated();
     }
 
     @Override
@@ -489,9 +513,11 @@ public class MeasureToolEntity extends MotionEntity {
 
     @Override
     public void release() {
-        if (this.mBitmap != null && !this.mBitmap.isRecycled()) {
-            this.mBitmap.recycle();
+        if (this.mZoomBitmap != null && !this.mZoomBitmap.isRecycled()) {
+            this.mZoomBitmap.recycle();
         }
+        this.mZoomBitmap = null;
+        this.mZoomCanvas = null;
     }
 
     public boolean addPoint(float x, float y) {
@@ -499,12 +525,13 @@ public class MeasureToolEntity extends MotionEntity {
             PointF point = new PointF(x, y);
             currentPoints.add(point);
             pointsVisited.add(false);
+            invalidateContent();
             return currentPoints.size() < POINTS_COUNT || mCurrentText == null;
         }
         return mCurrentText == null;
     }
 
-    private void drawImageEndpoint(PointF point, Paint paint) {
+    private void drawImageEndpoint(Canvas canvas, PointF point, Paint paint) {
         if (endpointBitmap == null) return;
         if (endpointRect == null) {
             endpointRect = new RectF();
@@ -515,21 +542,25 @@ public class MeasureToolEntity extends MotionEntity {
         float width = endpointBitmap.getWidth();
         if (height > 0 && width > 0) {
             endpointRect.set(x, y, x + width, y + height);
-            this.mCanvas.drawBitmap(endpointBitmap, null, endpointRect, paint);
+            canvas.drawBitmap(endpointBitmap, null, endpointRect, paint);
         }
     }
 
-    private void drawPoint(PointF point, Paint paint) {
+    private void drawPoint(Canvas canvas, PointF point, Paint paint) {
         float x = point.x;
         float y = point.y;
         this.mPaint.setStyle(Paint.Style.FILL);
-        this.mCanvas.drawCircle(x, y, innerRadius, paint);
+        canvas.drawCircle(x, y, innerRadius, paint);
     }
 
 
     @Override
     public boolean pointInLayerRect(PointF point) {
-        selectedPoint = getSelectedPointInArea(point);
+        PointF selected = getSelectedPointInArea(point);
+        if (selected != selectedPoint) {
+            selectedPoint = selected;
+            invalidateContent();
+        }
         setFocused(selectedPoint != null);
         return selectedPoint != null;
     }
@@ -576,6 +607,8 @@ public class MeasureToolEntity extends MotionEntity {
             if (!toCloseToOtherPoint) {
                 selectedPoint.set(newX, newY);
             }
+            // visited state may have changed as well
+            invalidateContent();
             return true;
         }
         return false;
@@ -589,11 +622,13 @@ public class MeasureToolEntity extends MotionEntity {
     public boolean undo() {
         if (mCurrentText != null) {
             mCurrentText = null;
+            invalidateContent();
             return true;
         }
         if (!currentPoints.isEmpty()) {
             currentPoints.clear();
             pointsVisited.clear();
+            invalidateContent();
             return false;
         }
         return false;
@@ -629,6 +664,8 @@ public class MeasureToolEntity extends MotionEntity {
 
     public void addText(String text, int fontSize, DisplayMetrics displayMetrics) {
         mCurrentText = text;
+        mTextLayout = null;
+        invalidateContent();
         float realFontSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, fontSize,
                 displayMetrics);
         mTextPaint.setStyle(Paint.Style.FILL);
@@ -637,21 +674,35 @@ public class MeasureToolEntity extends MotionEntity {
         mScaledDensity = displayMetrics.scaledDensity;
     }
 
-    public void setBackground(Bitmap background) {
-        backgroundRef = new WeakReference<>(background);
+    /**
+     * @param matrix transformation of the background into the canvas, e.g. its content mode and orientation
+     */
+    public void setBackground(@Nullable Bitmap background, @Nullable Matrix matrix) {
+        if (backgroundRef == null || backgroundRef.get() != background) {
+            backgroundRef = new WeakReference<>(background);
+            invalidateContent();
+        }
+        if (matrix != null && !mBackgroundMatrix.equals(matrix)) {
+            mBackgroundMatrix.set(matrix);
+            invalidateContent();
+        }
     }
 
     @Override
     public void setIsSelected(boolean isSelected) {
         super.setIsSelected(isSelected);
-        if (!isSelected) {
+        if (!isSelected && selectedPoint != null) {
             selectedPoint = null;
+            invalidateContent();
         }
     }
 
 
     public void setFocused(boolean focused) {
-        this.focused = focused;
+        if (this.focused != focused) {
+            this.focused = focused;
+            invalidateContent();
+        }
     }
 
     public String getEndpointImage() {
@@ -664,6 +715,7 @@ public class MeasureToolEntity extends MotionEntity {
 
     public void setEndpointBitmap(Bitmap endpointBitmap) {
         this.endpointBitmap = endpointBitmap;
+        invalidateContent();
     }
 
     public List<PointF> getCurrentPoints() {
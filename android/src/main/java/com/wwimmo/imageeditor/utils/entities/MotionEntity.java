@@ -6,7 +6,9 @@ import android.graphics.Color;
 import android.graphics.DashPathEffect;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.PointF;
+import android.graphics.RectF;
 import android.util.TypedValue;
 
 import androidx.annotation.IntRange;
@@ -47,6 +49,16 @@ public abstract class MotionEntity {
     private final PointF pB = new PointF();
     private final PointF pC = new PointF();
     private final PointF pD = new PointF();
+    /**
+     * Axis aligned bounds of destPoints, rejects most points before the triangle tests
+     */
+    private final RectF destBounds = new RectF();
+    /**
+     * Inputs the matrix (and destPoints) were computed from, see isMatrixDirty()
+     */
+    private int matrixLayerVersion = -1;
+    private int matrixCanvasWidth, matrixCanvasHeight, matrixWidth, matrixHeight;
+    private float matrixHolyScale, matrixSrcWidth, matrixSrcHeight;
     /**
      * maximum scale of the initial image, so that
      * the entity still fits within the parent canvas
@@ -73,6 +85,17 @@ public abstract class MotionEntity {
     private BorderStyle borderStyle = BorderStyle.DASHED;
     private final String id;
     private int measuredWidth, measuredHeight;
+    /**
+     * Version of the content (colour, stroke width, geometry). Subclasses cache their content
+     * (bitmap or path) and update it only when isContentDirty(), see invalidateContent()
+     */
+    private int contentVersion = 0;
+    private int updatedContentVersion = -1;
+    /**
+     * Stroke the content was updated with, see updateStroke()
+     */
+    private int contentStrokeColor;
+    private float contentStrokeWidth = -1;
 
     public MotionEntity(@NonNull Layer layer,
                         @IntRange(from = 1) int canvasWidth,
@@ -105,8 +128,13 @@ public abstract class MotionEntity {
      * NOTE: postconcat (postScale, etc.) works the other way : M` = S * M, in order to use it
      * we'd need to reverse the order of applying
      * transformations : post holy scale ->  postTranslate -> postRotate -> postScale
+     * <p>
+     * NOTE: the matrix is only recomputed when the layer or the size of the entity changed
      */
     protected void updateMatrix() {
+        if (!isMatrixDirty()) {
+            return;
+        }
         // init matrix to E - identity matrix
         matrix.reset();
 
@@ -139,6 +167,33 @@ public abstract class MotionEntity {
 
         // applying holy scale - S`, the result will be : L = S * R * T * S`
         matrix.preScale(holyScale, holyScale);
+
+        // map rect vertices
+        matrix.mapPoints(destPoints, srcPoints);
+        destBounds.set(destPoints[0], destPoints[1], destPoints[0], destPoints[1]);
+        for (int i = 2; i < 8; i += 2) {
+            destBounds.union(destPoints[i], destPoints[i + 1]);
+        }
+    }
+
+    private boolean isMatrixDirty() {
+        int width = getWidth();
+        int height = getHeight();
+        if (matrixLayerVersion == layer.getVersion()
+                && matrixCanvasWidth == canvasWidth && matrixCanvasHeight == canvasHeight
+                && matrixWidth == width && matrixHeight == height && matrixHolyScale == holyScale
+                && matrixSrcWidth == srcPoints[4] && matrixSrcHeight == srcPoints[5]) {
+            return false;
+        }
+        matrixLayerVersion = layer.getVersion();
+        matrixCanvasWidth = canvasWidth;
+        matrixCanvasHeight = canvasHeight;
+        matrixWidth = width;
+        matrixHeight = height;
+        matrixHolyScale = holyScale;
+        matrixSrcWidth = srcPoints[4];
+        matrixSrcHeight = srcPoints[5];
+        return true;
     }
 
     public float absoluteCenterX() {
@@ -175,7 +230,7 @@ public abstract class MotionEntity {
      * For more info:
      * <a href="http://math.stackexchange.com/questions/190111/how-to-check-if-a-point-is-inside-a-rectangle">StackOverflow: How to check point is in rectangle</a>
      * <p>NOTE: it's easier to apply the same transformation matrix (calculated before) to the original source points, rather than
-     * calculate the result points ourselves
+     * calculate the result points ourselves. The mapped points and their bounds are cached with the matrix.
      *
      * @param point point
      * @return true if point (x, y) is inside the triangle
@@ -183,8 +238,10 @@ public abstract class MotionEntity {
     public boolean pointInLayerRect(PointF point) {
 
         updateMatrix();
-        // map rect vertices
-        matrix.mapPoints(destPoints, srcPoints);
+        if (point.x < destBounds.left || point.x > destBounds.right
+                || point.y < destBounds.top || point.y > destBounds.bottom) {
+            return false;
+        }
 
         pA.x = destPoints[0];
         pA.y = destPoints[1];
@@ -227,6 +284,7 @@ public abstract class MotionEntity {
     }
 
     private void drawSelectedBg(Canvas canvas) {
+        // NOTE: subclasses overriding updateMatrix() (see MeasureToolEntity) don't refresh destPoints
         matrix.mapPoints(destPoints, srcPoints);
         if (this.borderStyle == BorderStyle.DASHED) {
             Paint dashedBorderPaint = borderPaint;
@@ -245,11 +303,56 @@ public abstract class MotionEntity {
         }
     }
 
+    /**
+     * Area covered by the entity on the canvas, including its border
+     * NOTE: computed from the cached matrix, see updateMatrix()
+     */
+    public void getBounds(@NonNull RectF out) {
+        updateMatrix();
+        out.set(destBounds);
+        float borderWidth = borderPaint.getStrokeWidth();
+        out.inset(-borderWidth, -borderWidth);
+    }
+
     @NonNull
     public Layer getLayer() {
         return layer;
     }
 
+    /**
+     * Mark the content as changed, it will be updated by the next draw
+     */
+    protected final void invalidateContent() {
+        contentVersion++;
+    }
+
+    protected final boolean isContentDirty() {
+        return updatedContentVersion != contentVersion;
+    }
+
+    /**
+     * Called by subclasses once the cached content matches the current content version
+     */
+    protected final void onContentUpdated() {
+        updatedContentVersion = contentVersion;
+    }
+
+    /**
+     * Track the stroke used by the content, invalidates the content when it changed.
+     *
+     * @param strokeWidth stroke width in source space, e.g. divided by the layer scale
+     * @return true if the stroke changed and the paint has to be updated
+     */
+    protected final boolean updateStroke(int strokeColor, float strokeWidth) {
+        if (strokeColor == contentStrokeColor && strokeWidth == contentStrokeWidth) {
+            return false;
+        }
+        contentStrokeColor = strokeColor;
+        contentStrokeWidth = strokeWidth;
+        invalidateContent();
+        return true;
+    }
+
     public void setBorderPaint(@NonNull Paint borderPaint) {
         this.borderPaint = borderPaint;
     }
@@ -260,6 +363,22 @@ public abstract class MotionEntity {
 
     protected abstract void drawContent(@NonNull Canvas canvas, @Nullable Paint drawingPaint);
 
+    /**
+     * Draw a shape defined in source space (see srcPoints) through the entity matrix.
+     * NOTE: no backing bitmap, the shape stays crisp at any scale. The stroke width of
+     * the paint is in source space as well.
+     *
+     * @param width  width of the source space, the shape is clipped to it
+     * @param height height of the source space
+     */
+    protected void drawShape(@NonNull Canvas canvas, @NonNull Path shape, @NonNull Paint paint, float width, float height) {
+        canvas.save();
+        canvas.concat(matrix);
+        canvas.clipRect(0, 0, width, height);
+        canvas.drawPath(shape, paint);
+        canvas.restore();
+    }
+
     public abstract int getWidth();
 
     public abstract int getHeight();
@@ -1,11 +1,7 @@
 package com.wwimmo.imageeditor.utils.entities;
 
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.PorterDuff;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
@@ -13,16 +9,9 @@ import androidx.annotation.Nullable;
 
 import com.wwimmo.imageeditor.utils.layers.Layer;
 
-public class RulerLineEntity extends MotionEntity {
+public class RulerLineEntity extends ShapeEntity {
     private int mWidth;
     private int mHeight;
-    private float mBordersPadding;
-    private float mStrokeWidth;
-    private int mStrokeColor;
-
-    private Paint mArrowPaint;
-    private Bitmap mArrowBitmap;
-    private Canvas mArrowCanvas;
 
     public RulerLineEntity(@NonNull Layer layer,
                            @IntRange(from = 1) int canvasWidth,
@@ -32,77 +21,26 @@ public class RulerLineEntity extends MotionEntity {
                            @Nullable Float bordersPadding,
                            @Nullable Float strokeWidth,
                            @Nullable Integer strokeColor) {
-        super(layer, canvasWidth, canvasHeight);
+        super(layer, canvasWidth, canvasHeight, bordersPadding, strokeWidth, strokeColor);
 
         this.mWidth = width;
         this.mHeight = height;
-        this.mStrokeWidth = 5;
-        this.mBordersPadding = 10;
-        this.mStrokeColor = Color.BLACK;
 
-        if (bordersPadding != null) {
-            this.mBordersPadding = bordersPadding;
-        }
-        if (strokeWidth != null) {
-            this.mStrokeWidth = strokeWidth;
-        }
-        if (strokeColor != null) {
-            this.mStrokeColor = strokeColor;
-        }
+        // This is essential for the overlapping paths to not result in a weird artefact
+        getPaint().setStrokeJoin(Paint.Join.BEVEL);
 
         updateEntity(false);
     }
 
-    private void updateEntity(boolean moveToPreviousCenter) {
-        configureArrowBitmap(null);
-
-        float width = this.mArrowBitmap.getWidth();
-        float height = this.mArrowBitmap.getHeight();
-
-        float widthAspect = 1.0F * canvasWidth / this.mArrowBitmap.getWidth();
-        float heightAspect = 1.0F * canvasHeight / this.mArrowBitmap.getHeight();
-
-        // fit the smallest size
-        holyScale = Math.min(widthAspect, heightAspect);
-
-        // initial position of the entity
-        srcPoints[0] = 0;
-        srcPoints[1] = 0;
-        srcPoints[2] = width;
-        srcPoints[3] = 0;
-        srcPoints[4] = width;
-        srcPoints[5] = height;
-        srcPoints[6] = 0;
-        srcPoints[7] = height;
-        srcPoints[8] = 0;
-        srcPoints[8] = 0;
-
-        if (moveToPreviousCenter) {
-            moveCenterTo(absoluteCenter());
-        }
-    }
-
-    private void configureArrowBitmap(@Nullable Paint paint) {
-        updatePaint(paint);
-        if (this.mArrowBitmap == null) {
-            this.mArrowBitmap = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
-            this.mArrowCanvas = new Canvas(this.mArrowBitmap);
-        }
-        this.mArrowCanvas.save();
-        this.mArrowCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-        this.drawArrow();
-        this.mArrowCanvas.restore();
-    }
-
-    private void drawArrow() {
+    @Override
+    protected void buildPath(@NonNull Path path) {
         int halfWidth = mWidth / 2;
         int halfHeight = mHeight / 2;
         int sideLine  = mHeight / 8;
 
         float centerX = getLayer().getX() + halfWidth;
         float centerY = getLayer().getY() + halfHeight;
-        
-        Path path = new Path();
+
         float bottom = centerY + halfHeight - mBordersPadding;
         float top = getLayer().getY() + mBordersPadding;
 
@@ -112,43 +50,6 @@ public class RulerLineEntity extends MotionEntity {
         path.lineTo(centerX, top); // Draw -- from bottom up
         path.moveTo(centerX - sideLine, top);
         path.lineTo(centerX + sideLine, top);
-
-        this.mArrowCanvas.drawPath(path, mArrowPaint);
-    }
-
-    private void updatePaint(@Nullable Paint paint) {
-        if (paint != null && isSelected()) {
-            this.mStrokeColor = paint.getColor();
-            this.mStrokeWidth = paint.getStrokeWidth();
-        }
-        
-        this.mArrowPaint = new Paint();
-        this.mArrowPaint.setColor(this.mStrokeColor);
-        this.mArrowPaint.setStrokeWidth(this.mStrokeWidth / getLayer().getScale());
-
-        // This is essential for the overlapping paths to not result in a weird artefact
-        this.mArrowPaint.setStrokeJoin(Paint.Join.BEVEL);
-
-        // TODO: Arrow Border gets pixelated because it's just done once (initially)!
-        this.mArrowPaint.setAntiAlias(true);
-
-        // When scaling the ArrowShape the border gets pixelated, this helps a bit against it.
-        // TODO: FIX THIS by somehow scaling the shape as well and not just the bitmap...
-        this.mArrowPaint.setFilterBitmap(true);
-        this.mArrowPaint.setDither(true);
-        this.mArrowPaint.setStyle(Paint.Style.STROKE);
-    }
-
-    @Override
-    protected void drawContent(@NonNull Canvas canvas, @Nullable Paint drawingPaint) {
-        configureArrowBitmap(drawingPaint);
-        canvas.drawBitmap(this.mArrowBitmap, matrix, this.mArrowPaint);
-    }
-
-    @Override
-    @NonNull
-    public Layer getLayer() {
-        return layer;
     }
 
     @Override
@@ -161,19 +62,8 @@ public class RulerLineEntity extends MotionEntity {
         return this.mHeight;
     }
 
-    public void updateEntity() {
-        updateEntity(true);
-    }
-
-    @Override
-    public void release() {
-        if (this.mArrowBitmap != null && !this.mArrowBitmap.isRecycled()) {
-            this.mArrowBitmap.recycle();
-        }
-    }
-
     @Override
     public String getShapeType() {
         return EntityType.RULER.label;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,145 @@
+package com.wwimmo.imageeditor.utils.entities;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.wwimmo.imageeditor.utils.layers.Layer;
+
+/**
+ * Entity drawn as a stroked path, e.g. circle, rect or arrow.
+ * <p>
+ * The path is built by buildPath() only when the content is dirty, see MotionEntity.isContentDirty().
+ * The paint is reused, its stroke is updated when the stroke or the layer scale changed.
+ */
+public abstract class ShapeEntity extends MotionEntity {
+    protected float mBordersPadding;
+    private float mStrokeWidth;
+    private int mStrokeColor;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    /**
+     * Shape in source space, drawn through the entity matrix (see MotionEntity.drawShape)
+     */
+    private final Path mPath = new Path();
+
+    public ShapeEntity(@NonNull Layer layer,
+                       @IntRange(from = 1) int canvasWidth,
+                       @IntRange(from = 1) int canvasHeight,
+                       @Nullable Float bordersPadding,
+                       @Nullable Float strokeWidth,
+                       @Nullable Integer strokeColor) {
+        super(layer, canvasWidth, canvasHeight);
+
+        this.mStrokeWidth = 5;
+        this.mBordersPadding = 10;
+        this.mStrokeColor = Color.BLACK;
+
+        if (bordersPadding != null) {
+            this.mBordersPadding = bordersPadding;
+        }
+        if (strokeWidth != null) {
+            this.mStrokeWidth = strokeWidth;
+        }
+        if (strokeColor != null) {
+            this.mStrokeColor = strokeColor;
+        }
+
+        this.mPaint.setStyle(Paint.Style.STROKE);
+    }
+
+    /**
+     * Build the shape in source space
+     *
+     * @param path empty path
+     */
+    protected abstract void buildPath(@NonNull Path path);
+
+    /**
+     * Paint the shape is stroked with, subclasses may tune it once, e.g. the stroke join
+     */
+    @NonNull
+    protected final Paint getPaint() {
+        return mPaint;
+    }
+
+    /**
+     * Size of the source space, the shape is clipped to it
+     */
+    protected int getContentWidth() {
+        return getWidth();
+    }
+
+    protected int getContentHeight() {
+        return getHeight();
+    }
+
+    /**
+     * NOTE: subclasses call it once their size is set, at the end of their constructor
+     */
+    protected void updateEntity(boolean moveToPreviousCenter) {
+        configurePath(null);
+
+        float width = getContentWidth();
+        float height = getContentHeight();
+
+        float widthAspect = 1.0F * canvasWidth / getContentWidth();
+        float heightAspect = 1.0F * canvasHeight / getContentHeight();
+
+        // fit the smallest size
+        holyScale = Math.min(widthAspect, heightAspect);
+
+        // initial position of the entity
+        srcPoints[0] = 0;
+        srcPoints[1] = 0;
+        srcPoints[2] = width;
+        srcPoints[3] = 0;
+        srcPoints[4] = width;
+        srcPoints[5] = height;
+        srcPoints[6] = 0;
+        srcPoints[7] = height;
+        srcPoints[8] = 0;
+        srcPoints[9] = 0;
+
+        if (moveToPreviousCenter) {
+            moveCenterTo(absoluteCenter());
+        }
+    }
+
+    public void updateEntity() {
+        updateEntity(true);
+    }
+
+    private void configurePath(@Nullable Paint paint) {
+        updatePaint(paint);
+        if (!isContentDirty()) {
+            return;
+        }
+        this.mPath.rewind();
+        buildPath(this.mPath);
+        onContentUpdated();
+    }
+
+    private void updatePaint(@Nullable Paint paint) {
+        if (paint != null && isSelected()) {
+            this.mStrokeColor = paint.getColor();
+            this.mStrokeWidth = paint.getStrokeWidth();
+        }
+        float strokeWidth = this.mStrokeWidth / getLayer().getScale();
+        if (updateStroke(this.mStrokeColor, strokeWidth)) {
+            this.mPaint.setColor(this.mStrokeColor);
+            this.mPaint.setStrokeWidth(strokeWidth);
+        }
+    }
+
+    @Override
+    protected void drawContent(@NonNull Canvas canvas, @Nullable Paint drawingPaint) {
+        configurePath(drawingPaint);
+        drawShape(canvas, this.mPath, this.mPaint, getContentWidth(), getContentHeight());
+    }
+}
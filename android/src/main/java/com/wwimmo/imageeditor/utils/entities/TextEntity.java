@@ -141,6 +141,7 @@ public class TextEntity extends MotionEntity {
         //draws static layout on canvas
         sl.draw(canvas);
         canvas.restore();
+        onContentUpdated();
 
         return bmp;
     }
@@ -160,14 +161,22 @@ public class TextEntity extends MotionEntity {
     private void updatePaint(@Nullable Paint paint) {
         if (paint != null && isSelected()) {
             int color = paint.getColor();
-            getLayer().getFont().setColor(color);
-            textPaint.setColor(color);
+            // the font color is the one the bitmap was drawn with, redraw it only when it changes
+            if (color != getLayer().getFont().getColor()) {
+                getLayer().getFont().setColor(color);
+                textPaint.setColor(color);
+                invalidateContent();
+            }
         }
     }
 
     @Override
     protected void drawContent(@NonNull Canvas canvas, @Nullable Paint drawingPaint) {
-        bitmap = configureTextBitmap(drawingPaint, bitmap);
+        updatePaint(drawingPaint);
+        // text and font changes go through updateEntity(), which rasterizes right away
+        if (bitmap == null || isContentDirty()) {
+            bitmap = configureTextBitmap(drawingPaint, bitmap);
+        }
         if (bitmap != null) {
             canvas.drawBitmap(bitmap, matrix, drawingPaint);
         }
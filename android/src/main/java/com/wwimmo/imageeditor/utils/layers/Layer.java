@@ -27,6 +27,12 @@ public class Layer {
      */
     private boolean mIsFlipped;
 
+    /**
+     * Incremented by every change of the transformation, so that users can cache what they derive from it
+     * (e.g. the entity matrix) and compare versions instead of values
+     */
+    private int mVersion = 0;
+
     public Layer() {
         reset();
     }
@@ -37,12 +43,30 @@ public class Layer {
         this.mIsFlipped = false;
         this.x = 0.0F;
         this.y = 0.0F;
+        mVersion++;
+    }
+
+    public int getVersion() {
+        return mVersion;
     }
 
     public void postScale(float scaleDiff) {
         float newVal = mScale + scaleDiff;
         if (newVal >= getMinScale() && newVal <= getMaxScale()) {
             mScale = newVal;
+            mVersion++;
+        }
+    }
+
+    /**
+     * Same as postScale(), but a change passing a limit scales up to the limit instead of being ignored.
+     * Used for the scale accumulated over a frame of pinch events, see ImageEditor.applyPendingTransform()
+     */
+    public void postScaleClamped(float scaleDiff) {
+        float newVal = Math.max(getMinScale(), Math.min(mScale + scaleDiff, getMaxScale()));
+        if (newVal != mScale) {
+            mScale = newVal;
+            mVersion++;
         }
     }
 
@@ -57,15 +81,18 @@ public class Layer {
     public void postRotate(float rotationInDegreesDiff) {
         this.mRotationInDegrees += rotationInDegreesDiff;
         this.mRotationInDegrees %= 360.0F;
+        mVersion++;
     }
 
     public void postTranslate(float dx, float dy) {
         this.x += dx;
         this.y += dy;
+        mVersion++;
     }
 
     public void flip() {
         this.mIsFlipped = !mIsFlipped;
+        mVersion++;
     }
 
     public float initialScale() {
@@ -78,6 +105,7 @@ public class Layer {
 
     public void setRotationInDegrees(@FloatRange(from = 0.0, to = 360.0) float rotationInDegrees) {
         this.mRotationInDegrees = rotationInDegrees;
+        mVersion++;
     }
 
     public float getScale() {
@@ -86,6 +114,7 @@ public class Layer {
 
     public void setScale(float scale) {
         this.mScale = scale;
+        mVersion++;
     }
 
     public float getX() {
@@ -94,6 +123,7 @@ public class Layer {
 
     public void setX(float x) {
         this.x = x;
+        mVersion++;
     }
 
     public float getY() {
@@ -102,6 +132,7 @@ public class Layer {
 
     public void setY(float y) {
         this.y = y;
+        mVersion++;
     }
 
     public boolean isFlipped() {
@@ -110,6 +141,7 @@ public class Layer {
 
     public void setFlipped(boolean flipped) {
         mIsFlipped = flipped;
+        mVersion++;
     }
 
     interface Limits {
@@ -0,0 +1,92 @@
+package com.wwimmo.imageeditor;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Touch samples are appended and drawn without allocating, see SketchData.addPoint()/drawLastPoint().
+ */
+public class SketchDataTest {
+    private static final int POINTS = 10000;
+    /**
+     * Lazily created paints and JVM noise. One PointF or Rect per point would be several hundred KB
+     */
+    private static final long MAX_ALLOCATED_BYTES = 4 * 1024;
+
+    private com.sun.management.ThreadMXBean mThreadBean;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        mThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+        Assume.assumeTrue(mThreadBean.isThreadAllocatedMemorySupported());
+        mThreadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void addPointDoesNotAllocate() {
+        assertAllocationsAreFlat(Color.BLACK);
+    }
+
+    @Test
+    public void addPointDoesNotAllocateForTranslucentStrokes() {
+        assertAllocationsAreFlat(0x80FF0000);
+    }
+
+    @Test
+    public void addPointDoesNotAllocateForErasers() {
+        assertAllocationsAreFlat(Color.TRANSPARENT);
+    }
+
+    @Test
+    public void addPointStoresThePoints() {
+        SketchData stroke = new SketchData(1, Color.BLACK, 5f);
+        for (int i = 0; i < POINTS; i++) {
+            stroke.addPoint(i, 2 * i);
+        }
+        assertEquals(POINTS, stroke.getPointsCount());
+        assertEquals(POINTS - 1, stroke.getX(POINTS - 1), 0f);
+        assertEquals(2 * (POINTS - 1), stroke.getY(POINTS - 1), 0f);
+    }
+
+    private void assertAllocationsAreFlat(int strokeColor) {
+        Canvas canvas = new Canvas();
+        // Warm up the JIT, so the measured run doesn't include its allocations
+        addPoints(newStroke(strokeColor), canvas);
+
+        SketchData stroke = newStroke(strokeColor);
+        long before = allocatedBytes();
+        addPoints(stroke, canvas);
+        long allocated = allocatedBytes() - before;
+
+        assertTrue("allocated " + allocated + " bytes for " + POINTS + " points", allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    /**
+     * Stroke with room for all the points, the growth of the backing array isn't measured
+     */
+    private static SketchData newStroke(int strokeColor) {
+        return new SketchData(1, strokeColor, 5f, new float[POINTS * 2], 0);
+    }
+
+    private static void addPoints(SketchData stroke, Canvas canvas) {
+        for (int i = 0; i < POINTS; i++) {
+            stroke.addPoint(i % 500, i % 700);
+            stroke.drawLastPoint(canvas);
+        }
+    }
+
+    private long allocatedBytes() {
+        return mThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -24,6 +24,7 @@ type Path = {
 
 type DrawingStateEvent = {
     canUndo?: boolean;
+    canRedo?: boolean;
     canDelete?:boolean;
     shapeType ?: string;
     drawingStep ?: number;
@@ -60,11 +61,34 @@ export interface SavePreference {
 }
 
 export interface LocalSourceImage {
+    /**
+     * File path, or on Android a content://, file:// or asset:// uri
+     */
     filename: string;
     directory?: string;
     mode?: "AspectFill" | "AspectFit" | "ScaleToFill";
 }
 
+/**
+ * Zoom and pan of the view, in pixels: view = content * scale + translate
+ */
+export interface Viewport {
+    scale: number;
+    translateX: number;
+    translateY: number;
+}
+
+export interface PrefetchAssets {
+    /**
+     * Fonts of the text shapes, as passed to addShape()
+     */
+    fonts?: string[];
+    /**
+     * Measurement tool endpoint images, as passed to addShape()
+     */
+    endpointImages?: string[];
+}
+
 export interface ShapeConfiguration {
     shapeBorderColor?: string;
     shapeBorderStyle?: "Dashed" | "Solid";
@@ -92,6 +116,20 @@ export interface ImageEditorProps {
     touchEnabled?: boolean;
     measuredWidth?: number,
     measuredHeight?: number,
+    /**
+     * Android only. Memory (in MB) used for drawing snapshots that make undo cheap. Default 32, 0 disables them.
+     */
+    checkpointMemoryLimit?: number,
+    /**
+     * Android only. Minimum time (in ms) between two onPathsChange/onDrawingStateChanged events.
+     * Default 0, at most one event of each kind per frame. Selection changes and save results are never delayed.
+     */
+    eventThrottleInterval?: number,
+    /**
+     * Android only. Maximum zoom of the pinch-zoom viewport, strokes are drawn with one finger and the
+     * view is zoomed and panned with two. Default 1, zoom disabled.
+     */
+    maxZoom?: number,
     /**
      * {
      *    shapeBorderColor: string,
@@ -120,13 +158,26 @@ export interface ImageEditorProps {
     onPathsChange?: (pathsCount: number) => void;
     onShapeSelectionChanged?: (isShapeSelected: boolean) => void;
     onDrawingStateChanged?: (event: DrawingStateEvent) => void;
+    /**
+     * Android only. Called when the localSourceImage starts and finishes loading, success is set once it finished.
+     */
+    onBackgroundLoadingChanged?: (isLoading: boolean, success?: boolean) => void;
+    /**
+     * Android only. Called when the view is zoomed or panned, see maxZoom.
+     */
+    onViewportChanged?: (viewport: Viewport) => void;
 }
 
 export class ImageEditor extends React.Component<ImageEditorProps & ViewProperties> {
     clear(): void;
     undo(): number;
     undoShape(): number;
+    /**
+     * Android only. Re-apply the last stroke or shape removed by undoShape().
+     */
+    redoShape(): void;
     addPath(data: Path): void;
+    addPaths(data: Path[]): void;
     deletePath(id: number): void;
     addShape(config: AddShapeConfig): void;
     deleteSelectedShape(): void;
@@ -168,6 +219,13 @@ export class ImageEditor extends React.Component<ImageEditorProps & ViewProperti
         callback: (error: any, result?: string) => void
     ): void;
 
+    /**
+     * Android only. Decode an image into the editor caches before the editor showing it is mounted.
+     * The image is decoded at the screen size, as the editor does, so the editor finds it whatever its layout.
+     * @param uri Same as `LocalSourceImage.filename`
+     */
+    static prefetch(uri: string | null, assets?: PrefetchAssets): Promise<void>;
+
     static MAIN_BUNDLE: string;
     static DOCUMENT: string;
     static LIBRARY: string;
@@ -251,6 +309,7 @@ export default class RNImageEditor extends React.Component<RNImageEditorProps &
     clear(): void;
     undo(): number;
     addPath(data: Path): void;
+    addPaths(data: Path[]): void;
     deletePath(id: number): void;
     addShape(config: AddShapeConfig): void;
     deleteSelectedShape(): void;
@@ -261,6 +320,13 @@ export default class RNImageEditor extends React.Component<RNImageEditorProps &
     save(): void;
     nextStrokeWidth(): void;
 
+    /**
+     * Android only. Decode an image into the editor caches before the editor showing it is mounted.
+     * The image is decoded at the screen size, as the editor does, so the editor finds it whatever its layout.
+     * @param uri Same as `LocalSourceImage.filename`
+     */
+    static prefetch(uri: string | null, assets?: PrefetchAssets): Promise<void>;
+
     static MAIN_BUNDLE: string;
     static DOCUMENT: string;
     static LIBRARY: string;
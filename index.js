@@ -173,10 +173,18 @@ export default class RNImageEditor extends React.Component {
         return this._sketchCanvas.undoShape();
     }
 
+    redoShape() {
+        return this._sketchCanvas.redoShape();
+    }
+
     addPath(data) {
         this._sketchCanvas.addPath(data);
     }
 
+    addPaths(data) {
+        this._sketchCanvas.addPaths(data);
+    }
+
     deletePath(id) {
         this._sketchCanvas.deletePath(id);
     }
@@ -410,5 +418,6 @@ RNImageEditor.MAIN_BUNDLE = ImageEditor.MAIN_BUNDLE;
 RNImageEditor.DOCUMENT = ImageEditor.DOCUMENT;
 RNImageEditor.LIBRARY = ImageEditor.LIBRARY;
 RNImageEditor.CACHES = ImageEditor.CACHES;
+RNImageEditor.prefetch = ImageEditor.prefetch;
 
 export { ImageEditor };
@@ -29,6 +29,9 @@ class ImageEditor extends React.Component {
         strokeWidth: PropTypes.number,
         measuredWidth: PropTypes.number,
         measuredHeight: PropTypes.number,
+        checkpointMemoryLimit: PropTypes.number,
+        eventThrottleInterval: PropTypes.number,
+        maxZoom: PropTypes.number,
         onPathsChange: PropTypes.func,
         onStrokeStart: PropTypes.func,
         onStrokeChanged: PropTypes.func,
@@ -36,6 +39,8 @@ class ImageEditor extends React.Component {
         onSketchSaved: PropTypes.func,
         onShapeSelectionChanged: PropTypes.func,
         onDrawingStateChanged: PropTypes.func,
+        onBackgroundLoadingChanged: PropTypes.func,
+        onViewportChanged: PropTypes.func,
         shapeConfiguration: PropTypes.shape({
             shapeBorderColor: PropTypes.string,
             shapeBorderStyle: PropTypes.string,
@@ -90,6 +95,10 @@ class ImageEditor extends React.Component {
         },
         onShapeSelectionChanged: () => {
         },
+        onBackgroundLoadingChanged: () => {
+        },
+        onViewportChanged: () => {
+        },
         shapeConfiguration: {
             shapeBorderColor: "transparent",
             shapeBorderStyle: "Dashed",
@@ -101,6 +110,7 @@ class ImageEditor extends React.Component {
         scale: 1,
 
         touchEnabled: true,
+        maxZoom: 1,
 
         text: null,
         localSourceImage: null,
@@ -126,6 +136,10 @@ class ImageEditor extends React.Component {
         this._offset = { x: 0, y: 0 };
         this._size = { width: 0, height: 0 };
         this._initialized = false;
+        this._pendingPoints = [];
+        this._pendingPointsFrame = null;
+        // Zoom and pan of the native view, in px
+        this._viewport = { scale: 1, translateX: 0, translateY: 0 };
 
         this.state = {
             text: ImageEditor.processText(props.text ? props.text.map((t) => Object.assign({}, t)) : null),
@@ -148,6 +162,25 @@ class ImageEditor extends React.Component {
         return text;
     }
 
+    /**
+     * Android only. Decode a background image, and optionally fonts and measurement endpoint images,
+     * into the editor caches before the editor is mounted.
+     * The background is decoded at the screen size, as the editor does, whatever the layout of the editor.
+     * Resolves once everything is cached, resolves right away on iOS.
+     */
+    static prefetch(uri, assets = {}) {
+        if (Platform.OS !== "android") {
+            return Promise.resolve();
+        }
+        return NativeModules.ImageEditorModule.prefetch(
+            uri,
+            {
+                fonts: assets.fonts || [],
+                endpointImages: assets.endpointImages || []
+            }
+        );
+    }
+
     componentDidUpdate(prevProps, prevState) {
         if (prevState.text !== this.state.text) {
             this.setState({
@@ -174,6 +207,15 @@ class ImageEditor extends React.Component {
         );
     }
 
+    redoShape() {
+        if (Platform.OS !== "android") return;
+        UIManager.dispatchViewManagerCommand(
+            this._handle,
+            UIManager.getViewManagerConfig(RNImageEditor).Commands.redoShape,
+            []
+        );
+    }
+
     undo() {
         let lastId = -1;
         this._paths.forEach((d) => (lastId = d.drawer === this.props.user ? d.path.id : lastId));
@@ -184,17 +226,10 @@ class ImageEditor extends React.Component {
     addPath(data) {
         if (this._initialized) {
             if (this._paths.filter((p) => p.path.id === data.path.id).length === 0) this._paths.push(data);
-            const pathData = data.path.data.map((p) => {
-                const coor = p.split(",").map((pp) => parseFloat(pp).toFixed(2));
-                return `${(coor[0] * this._screenScale * this._size.width) / data.size.width},${(coor[1] *
-                    this._screenScale *
-                    this._size.height) /
-                data.size.height}`;
-            });
             UIManager.dispatchViewManagerCommand(
                 this._handle,
                 UIManager.getViewManagerConfig(RNImageEditor).Commands.addPath,
-                [data.path.id, processColor(data.path.color), data.path.width * this._screenScale, pathData]
+                this._getPathCommandArgs(data)
             );
         } else {
             this._pathsToProcess.filter((p) => p.path.id === data.path.id).length === 0 &&
@@ -202,6 +237,113 @@ class ImageEditor extends React.Component {
         }
     }
 
+    addPaths(dataList) {
+        if (Platform.OS !== "android" || !this._initialized) {
+            dataList.forEach((data) => this.addPath(data));
+            return;
+        }
+        const knownIds = new Set(this._paths.map((p) => p.path.id));
+        dataList.forEach((data) => {
+            if (!knownIds.has(data.path.id)) {
+                knownIds.add(data.path.id);
+                this._paths.push(data);
+            }
+        });
+        // Native side skips ids it already has, so the whole list is restored with one redraw
+        UIManager.dispatchViewManagerCommand(
+            this._handle,
+            UIManager.getViewManagerConfig(RNImageEditor).Commands.addPaths,
+            [dataList.map((data) => this._getPathCommandArgs(data))]
+        );
+    }
+
+    _getPathCommandArgs(data) {
+        const points = data.path.data.map((p) => {
+            const coor = p.split(",").map((pp) => parseFloat(pp).toFixed(2));
+            return [
+                (coor[0] * this._screenScale * this._size.width) / data.size.width,
+                (coor[1] * this._screenScale * this._size.height) / data.size.height
+            ];
+        });
+        // Android accepts a flat numeric array, which avoids re-parsing strings natively
+        const pathData =
+            Platform.OS === "android" ? [].concat(...points) : points.map((coor) => `${coor[0]},${coor[1]}`);
+        return [data.path.id, processColor(data.path.color), data.path.width * this._screenScale, pathData];
+    }
+
+    _queuePoint(x, y) {
+        if (Platform.OS !== "android") {
+            UIManager.dispatchViewManagerCommand(
+                this._handle,
+                UIManager.getViewManagerConfig(RNImageEditor).Commands.addPoint,
+                [x, y, true]
+            );
+            return;
+        }
+        // Move samples are sent once per frame as a single addPoints command
+        this._pendingPoints.push(x, y);
+        if (this._pendingPointsFrame === null) {
+            this._pendingPointsFrame = requestAnimationFrame(() => this._flushPoints());
+        }
+    }
+
+    _flushPoints() {
+        if (this._pendingPointsFrame !== null) {
+            cancelAnimationFrame(this._pendingPointsFrame);
+            this._pendingPointsFrame = null;
+        }
+        if (this._pendingPoints.length > 0) {
+            UIManager.dispatchViewManagerCommand(
+                this._handle,
+                UIManager.getViewManagerConfig(RNImageEditor).Commands.addPoints,
+                [this._pendingPoints, true]
+            );
+            this._pendingPoints = [];
+        }
+    }
+
+    /**
+     * Map a touch position (relative to the view) to the coordinates strokes are stored in,
+     * they differ from the view ones while the view is zoomed in.
+     * NOTE: only for the path kept on JS side, the points sent to the view are mapped natively
+     */
+    _toContentPoint(x, y) {
+        const { scale, translateX, translateY } = this._viewport;
+        return {
+            x: (x - translateX / this._screenScale) / scale,
+            y: (y - translateY / this._screenScale) / scale
+        };
+    }
+
+    _endPath() {
+        this._flushPoints();
+        if (this._path) {
+            this.props.onStrokeEnd({ path: this._path, size: this._size, drawer: this.props.user });
+            this._paths.push({ path: this._path, size: this._size, drawer: this.props.user });
+        }
+        UIManager.dispatchViewManagerCommand(
+            this._handle,
+            UIManager.getViewManagerConfig(RNImageEditor).Commands.endPath,
+            []
+        );
+    }
+
+    _cancelPath() {
+        if (!this._path) return;
+        this._flushPoints();
+        UIManager.dispatchViewManagerCommand(
+            this._handle,
+            UIManager.getViewManagerConfig(RNImageEditor).Commands.endPath,
+            []
+        );
+        UIManager.dispatchViewManagerCommand(
+            this._handle,
+            UIManager.getViewManagerConfig(RNImageEditor).Commands.deletePath,
+            [this._path.id]
+        );
+        this._path = null;
+    }
+
     deletePath(id) {
         this._paths = this._paths.filter((p) => p.path.id !== id);
         UIManager.dispatchViewManagerCommand(
@@ -298,6 +440,15 @@ class ImageEditor extends React.Component {
         }
     }
 
+    componentWillUnmount() {
+        // The queued move samples would be sent to a view that doesn't exist anymore
+        if (this._pendingPointsFrame !== null) {
+            cancelAnimationFrame(this._pendingPointsFrame);
+            this._pendingPointsFrame = null;
+        }
+        this._pendingPoints = [];
+    }
+
     async componentDidMount() {
         const isStoragePermissionAuthorized = await requestPermissions(
             this.props.permissionDialogTitle,
@@ -313,6 +464,7 @@ class ImageEditor extends React.Component {
             onPanResponderGrant: (evt, gestureState) => {
                 if (!this.props.touchEnabled) return;
                 const e = evt.nativeEvent;
+                this._flushPoints();
                 this._offset = { x: e.pageX - e.locationX, y: e.pageY - e.locationY };
                 this._path = {
                     id: parseInt(Math.random() * 100000000),
@@ -326,50 +478,54 @@ class ImageEditor extends React.Component {
                     UIManager.getViewManagerConfig(RNImageEditor).Commands.newPath,
                     [this._path.id, processColor(this._path.color), this._path.width * this._screenScale]
                 );
+                // The view maps the touches to content coordinates itself, with its current viewport
+                const viewX = gestureState.x0 - this._offset.x,
+                    viewY = gestureState.y0 - this._offset.y;
                 UIManager.dispatchViewManagerCommand(
                     this._handle,
                     UIManager.getViewManagerConfig(RNImageEditor).Commands.addPoint,
                     [
-                        parseFloat((gestureState.x0 - this._offset.x).toFixed(2) * this._screenScale),
-                        parseFloat((gestureState.y0 - this._offset.y).toFixed(2) * this._screenScale),
+                        parseFloat(viewX.toFixed(2) * this._screenScale),
+                        parseFloat(viewY.toFixed(2) * this._screenScale),
                         false
                     ]
                 );
-                const x = parseFloat((gestureState.x0 - this._offset.x).toFixed(2)),
-                    y = parseFloat((gestureState.y0 - this._offset.y).toFixed(2));
+                const p = this._toContentPoint(viewX, viewY);
+                const x = parseFloat(p.x.toFixed(2)),
+                    y = parseFloat(p.y.toFixed(2));
                 this._path.data.push(`${x},${y}`);
                 this.props.onStrokeStart(x, y);
             },
             onPanResponderMove: (evt, gestureState) => {
                 if (!this.props.touchEnabled) return;
+                if (this.props.maxZoom > 1 && gestureState.numberActiveTouches > 1) {
+                    // Two fingers zoom the view natively, they don't draw
+                    this._cancelPath();
+                    return;
+                }
                 if (Math.abs(gestureState.dx) < 2.5 || Math.abs(gestureState.dy) < 2.5) return;
                 if (this._path) {
-                    const x = parseFloat(
-                            (gestureState.x0 + gestureState.dx / this.props.scale - this._offset.x).toFixed(2)
-                        ),
-                        y = parseFloat(
-                            (gestureState.y0 + gestureState.dy / this.props.scale - this._offset.y).toFixed(2)
-                        );
-                    UIManager.dispatchViewManagerCommand(
-                        this._handle,
-                        UIManager.getViewManagerConfig(RNImageEditor).Commands.addPoint,
-                        [parseFloat(x * this._screenScale), parseFloat(y * this._screenScale), true]
+                    const viewX = gestureState.x0 + gestureState.dx / this.props.scale - this._offset.x,
+                        viewY = gestureState.y0 + gestureState.dy / this.props.scale - this._offset.y;
+                    this._queuePoint(
+                        parseFloat(viewX.toFixed(2) * this._screenScale),
+                        parseFloat(viewY.toFixed(2) * this._screenScale)
                     );
+                    const p = this._toContentPoint(viewX, viewY);
+                    const x = parseFloat(p.x.toFixed(2)),
+                        y = parseFloat(p.y.toFixed(2));
                     this._path.data.push(`${x},${y}`);
                     this.props.onStrokeChanged(x, y);
                 }
             },
             onPanResponderRelease: (evt, gestureState) => {
                 if (!this.props.touchEnabled) return;
-                if (this._path) {
-                    this.props.onStrokeEnd({ path: this._path, size: this._size, drawer: this.props.user });
-                    this._paths.push({ path: this._path, size: this._size, drawer: this.props.user });
-                }
-                UIManager.dispatchViewManagerCommand(
-                    this._handle,
-                    UIManager.getViewManagerConfig(RNImageEditor).Commands.endPath,
-                    []
-                );
+                this._endPath();
+            },
+            // Another responder took over the touch, the stroke ends where it was
+            onPanResponderTerminate: (evt, gestureState) => {
+                if (!this.props.touchEnabled) return;
+                this._endPath();
             },
 
             onShouldBlockNativeResponder: (evt, gestureState) => {
@@ -391,10 +547,13 @@ class ImageEditor extends React.Component {
                 onLayout={(e) => {
                     this._size = { width: e.nativeEvent.layout.width, height: e.nativeEvent.layout.height };
                     this._initialized = true;
-                    this._pathsToProcess.length > 0 && this._pathsToProcess.forEach((p) => this.addPath(p));
+                    this._pathsToProcess.length > 0 && this.addPaths(this._pathsToProcess);
                 }}
                 measuredWidth={this.props.measuredWidth}
                 measuredHeight={this.props.measuredHeight}
+                checkpointMemoryLimit={this.props.checkpointMemoryLimit}
+                eventThrottleInterval={this.props.eventThrottleInterval}
+                maxZoom={this.props.maxZoom}
                 {...(this.state.hasPanResponder ? this.panResponder.panHandlers : undefined)}
                 {...this.panResponder?.panHandlers}
                 onChange={(e) => {
@@ -404,11 +563,17 @@ class ImageEditor extends React.Component {
                         this.props.onSketchSaved(e.nativeEvent.success, e.nativeEvent.path);
                     } else if (e.nativeEvent.hasOwnProperty("success")) {
                         this.props.onSketchSaved(e.nativeEvent.success);
+                    } else if (e.nativeEvent.hasOwnProperty("isBackgroundLoading")) {
+                        this.props.onBackgroundLoadingChanged(e.nativeEvent.isBackgroundLoading, e.nativeEvent.backgroundLoaded);
+                    } else if (e.nativeEvent.hasOwnProperty("viewport")) {
+                        this._viewport = e.nativeEvent.viewport;
+                        this.props.onViewportChanged(this._viewport);
                     } else if (e.nativeEvent.hasOwnProperty("isShapeSelected")) {
                         this.props.onShapeSelectionChanged(e.nativeEvent.isShapeSelected);
                     } else if (e.nativeEvent.hasOwnProperty("canUndo")) {
                         this.props.onDrawingStateChanged({
                             canUndo: e.nativeEvent.canUndo,
+                            canRedo: e.nativeEvent.canRedo,
                             canDelete: e.nativeEvent.canDelete,
                             shapeType: e.nativeEvent.shapeType,
                             drawingStep: e.nativeEvent.drawingStep